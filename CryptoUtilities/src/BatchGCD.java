@@ -0,0 +1,210 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Bernstein's batch GCD: for moduli X_0, ..., X_(k-1), finds
+ * gcd(X_j, product of the other X_i) for every j at once, which exposes the
+ * moduli that share a prime with some other modulus without computing all
+ * k(k-1)/2 pairwise GCDs.
+ *
+ * A product tree is built bottom up (each node is the product of its two
+ * children), then its root P is pushed back down a remainder tree: each node
+ * gets the remainder of its parent's value modulo the square of its own
+ * product. At leaf j this leaves P mod X_j^2, and
+ * gcd(X_j, (P mod X_j^2) / X_j) = gcd(X_j, P / X_j). Every level of either
+ * tree is a set of independent products or divisions, which are spread over
+ * the pool when one is given.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public final class BatchGCD {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private BatchGCD() {
+    }
+
+    /**
+     * Runs op on every index in [low, high), splitting the range in halves
+     * until it is a single index.
+     */
+    private static final class RangeAction extends RecursiveAction {
+
+        /**
+         * Serialization id (RecursiveAction is Serializable).
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * First index.
+         */
+        private final int low;
+
+        /**
+         * One past the last index.
+         */
+        private final int high;
+
+        /**
+         * The operation.
+         */
+        private final transient IntConsumer op;
+
+        /**
+         * Constructor.
+         *
+         * @param low
+         *            first index
+         * @param high
+         *            one past the last index
+         * @param op
+         *            the operation
+         */
+        RangeAction(int low, int high, IntConsumer op) {
+            this.low = low;
+            this.high = high;
+            this.op = op;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.high - this.low == 1) {
+                this.op.accept(this.low);
+            } else if (this.high - this.low > 1) {
+                int middle = (this.low + this.high) >>> 1;
+                invokeAll(new RangeAction(this.low, middle, this.op),
+                        new RangeAction(middle, this.high, this.op));
+            }
+        }
+
+    }
+
+    /**
+     * Runs op on every index in [0, count), on pool if there is one and on
+     * the calling thread otherwise.
+     *
+     * @param count
+     *            the number of indices
+     * @param op
+     *            the operation
+     * @param pool
+     *            the pool, or null
+     */
+    private static void forEachIndex(int count, IntConsumer op,
+            ForkJoinPool pool) {
+        if (pool == null) {
+            for (int j = 0; j < count; j++) {
+                op.accept(j);
+            }
+        } else {
+            pool.invoke(new RangeAction(0, count, op));
+        }
+    }
+
+    /**
+     * Reports gcd(X_j, product of the other moduli) for every modulus X_j.
+     *
+     * @param moduli
+     *            the moduli, not modified
+     * @return the GCDs, in the order of the moduli
+     * @requires [every entry of moduli is positive]
+     * @ensures <pre>
+     * |gcds| = |moduli|  and
+     * [entry j of gcds = gcd(entry j of moduli, product of the others)]
+     * </pre>
+     */
+    public static List<NaturalNumber> gcds(List<NaturalNumber> moduli) {
+        return gcds(moduli, null);
+    }
+
+    /**
+     * Reports gcd(X_j, product of the other moduli) for every modulus X_j,
+     * spreading each level of the trees over pool.
+     *
+     * @param moduli
+     *            the moduli, not modified
+     * @param pool
+     *            the pool to run on, or null to run on the calling thread
+     * @return the GCDs, in the order of the moduli
+     * @requires [every entry of moduli is positive]
+     * @ensures <pre>
+     * |gcds| = |moduli|  and
+     * [entry j of gcds = gcd(entry j of moduli, product of the others)]
+     * </pre>
+     */
+    public static List<NaturalNumber> gcds(List<NaturalNumber> moduli,
+            ForkJoinPool pool) {
+        /*
+         * Product tree: levels.get(0) holds copies of the moduli, and each
+         * level above holds the products of adjacent pairs of the one below
+         * (an odd one out is carried up as it is)
+         */
+        List<NaturalNumber[]> levels = new ArrayList<>();
+        NaturalNumber[] leaves = new NaturalNumber[moduli.size()];
+        for (int j = 0; j < leaves.length; j++) {
+            leaves[j] = CryptoUtilities.copyOf(moduli.get(j));
+        }
+        levels.add(leaves);
+        while (levels.get(levels.size() - 1).length > 1) {
+            NaturalNumber[] below = levels.get(levels.size() - 1);
+            NaturalNumber[] above = new NaturalNumber[(below.length + 1) / 2];
+            forEachIndex(above.length, j -> {
+                above[j] = CryptoUtilities.copyOf(below[2 * j]);
+                if (2 * j + 1 < below.length) {
+                    above[j].multiply(below[2 * j + 1]);
+                }
+            }, pool);
+            levels.add(above);
+        }
+        /*
+         * Remainder tree, top down: each parent reduces its own value modulo
+         * the squares of its children, so no value is read by two tasks
+         */
+        NaturalNumber[] remainders = levels.get(levels.size() - 1).clone();
+        if (remainders.length > 0) {
+            remainders[0] = CryptoUtilities.copyOf(remainders[0]);
+        }
+        for (int level = levels.size() - 2; level >= 0; level--) {
+            NaturalNumber[] nodes = levels.get(level);
+            NaturalNumber[] parents = remainders;
+            NaturalNumber[] children = new NaturalNumber[nodes.length];
+            forEachIndex(parents.length, j -> {
+                int last = Math.min(2 * j + 1, nodes.length - 1);
+                for (int c = 2 * j; c <= last; c++) {
+                    NaturalNumber square = CryptoUtilities.copyOf(nodes[c]);
+                    square.multiply(nodes[c]);
+                    NaturalNumber quotient = CryptoUtilities
+                            .copyOf(parents[j]);
+                    children[c] = quotient.divide(square);
+                }
+            }, pool);
+            remainders = children;
+        }
+        /*
+         * At each leaf, gcd(X_j, (P mod X_j^2) / X_j); a quotient of 0 (X_j^2
+         * divides P) means the GCD is X_j itself
+         */
+        NaturalNumber[] results = remainders;
+        forEachIndex(leaves.length, j -> {
+            results[j].divide(leaves[j]);
+            if (results[j].isZero()) {
+                results[j].transferFrom(leaves[j]);
+            } else {
+                CryptoUtilities.reduceToGCD(results[j], leaves[j]);
+            }
+        }, pool);
+        List<NaturalNumber> gcds = new ArrayList<>();
+        for (NaturalNumber g : results) {
+            gcds.add(g);
+        }
+        return gcds;
+    }
+
+}
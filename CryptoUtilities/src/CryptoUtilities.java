@@ -1,7 +1,11 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
 import components.naturalnumber.NaturalNumber;
 import components.naturalnumber.NaturalNumber2;
-import components.random.Random;
-import components.random.Random1L;
 import components.simplereader.SimpleReader;
 import components.simplereader.SimpleReader1L;
 import components.simplewriter.SimpleWriter;
@@ -10,6 +14,11 @@ import components.simplewriter.SimpleWriter1L;
 /**
  * Utilities that could be used with RSA cryptosystems.
  *
+ * Every number these utilities allocate has the same implementation as the
+ * number it is computed from (via {@code newInstance}), so callers choose the
+ * implementation used on the hot path by the arguments they pass, e.g.,
+ * {@code NaturalNumber3} for machine-word arithmetic at RSA sizes.
+ *
  * @author Charles Sirichoktanasup
  *
  */
@@ -27,9 +36,67 @@ public final class CryptoUtilities {
     private static final int THREE = 3;
 
     /**
-     * Pseudo-random number generator.
+     * Useful constant, not a magic number: 5.
+     */
+    private static final int FIVE = 5;
+
+    /**
+     * Number of random witness candidates tried by isPrime2 by default.
+     */
+    static final int ITERATIONS = 30;
+
+    /**
+     * Number of odd candidates sieved at a time by generateNextLikelyPrime.
+     */
+    private static final int SIEVE_WINDOW = 2048;
+
+    /**
+     * Smallest bit length for which roundsFor uses the average-case bound.
+     */
+    private static final int AVERAGE_CASE_MIN_BITS = 21;
+
+    /**
+     * The average-case bound holds for round counts up to bits / this.
+     */
+    private static final int AVERAGE_CASE_RATIO = 9;
+
+    /**
+     * Pseudo-random number generator used when the caller does not supply
+     * one; each thread draws from its own stream, so it may be shared.
+     */
+    private static final RandomSource GENERATOR = RandomSources.perThread();
+
+    /**
+     * Returns a new number with value i, of the same implementation as like.
+     *
+     * @param like
+     *            number whose implementation to use
+     * @param i
+     *            the value
+     * @return the new number
+     * @requires i >= 0
+     * @ensures newNaturalNumber = i and [newNaturalNumber has the same
+     *          dynamic type as like]
+     */
+    static NaturalNumber newNaturalNumber(NaturalNumber like, int i) {
+        NaturalNumber result = like.newInstance();
+        result.setFromInt(i);
+        return result;
+    }
+
+    /**
+     * Returns a new copy of n, of the same implementation as n.
+     *
+     * @param n
+     *            the number to copy
+     * @return the copy
+     * @ensures copyOf = n and [copyOf has the same dynamic type as n]
      */
-    private static final Random GENERATOR = new Random1L();
+    static NaturalNumber copyOf(NaturalNumber n) {
+        NaturalNumber result = n.newInstance();
+        result.copyFrom(n);
+        return result;
+    }
 
     /**
      * Returns a random number uniformly distributed in the interval [0, n].
@@ -44,44 +111,92 @@ public final class CryptoUtilities {
      */
     public static NaturalNumber randomNumber(NaturalNumber n) {
         assert !n.isZero() : "Violation of: n > 0";
-        final int base = 10;
-        NaturalNumber result;
-        int d = n.divideBy10();
-        if (n.isZero()) {
-            /*
-             * Incoming n has only one digit and it is d, so generate a random
-             * number uniformly distributed in [0, d]
-             */
-            int x = (int) ((d + 1) * GENERATOR.nextDouble());
-            result = new NaturalNumber2(x);
-            n.multiplyBy10(d);
+
+        return randomNumber(n, GENERATOR);
+    }
+
+    /**
+     * Returns a random number uniformly distributed in the interval [0, n],
+     * drawing from the given source.
+     *
+     * @param n
+     *            top end of interval
+     * @param source
+     *            the source of randomness
+     * @return random number in interval
+     * @requires n > 0
+     * @ensures <pre>
+     * randomNumber = [a random number uniformly distributed in [0, n]]
+     * </pre>
+     */
+    public static NaturalNumber randomNumber(NaturalNumber n,
+            RandomSource source) {
+        assert !n.isZero() : "Violation of: n > 0";
+        assert source != null : "Violation of: source is not null";
+
+        /*
+         * Draw random bits up to the bit length of n and retry the whole draw
+         * if it overshoots, rather than one random digit per recursive call
+         */
+        return new UniformSampler(n).next(source);
+    }
+
+    /**
+     * Finds the greatest common divisor of n and m.
+     *
+     * @param n
+     *            one number (ends as the GCD)
+     * @param m
+     *            the other number (ends as the remainder (0))
+     * @updates n
+     * @clears m
+     * @ensures n = [greatest common divisor of #n and #m]
+     */
+    public static void reduceToGCD(NaturalNumber n, NaturalNumber m) {
+        reduceToGCD(n, m, GcdStrategy.EUCLID);
+    }
+
+    /**
+     * Finds the greatest common divisor of n and m with the given algorithm.
+     * Every strategy gives the same results as {@code reduceToGCD(n, m)}; the
+     * machine-word strategies convert n and m to {@code NaturalNumber3} (if
+     * they are not already) and back.
+     *
+     * @param n
+     *            one number (ends as the GCD)
+     * @param m
+     *            the other number (ends as the remainder (0))
+     * @param strategy
+     *            the algorithm to use
+     * @updates n
+     * @clears m
+     * @ensures n = [greatest common divisor of #n and #m]
+     */
+    public static void reduceToGCD(NaturalNumber n, NaturalNumber m,
+            GcdStrategy strategy) {
+        assert strategy != null : "Violation of: strategy is not null";
+
+        if (strategy == GcdStrategy.EUCLID || m.isZero()) {
+            reduceToGCDByDivision(n, m);
         } else {
-            /*
-             * Incoming n has more than one digit, so generate a random number
-             * (NaturalNumber) uniformly distributed in [0, n], and another
-             * (int) uniformly distributed in [0, 9] (i.e., a random digit)
-             */
-            result = randomNumber(n);
-            int lastDigit = (int) (base * GENERATOR.nextDouble());
-            result.multiplyBy10(lastDigit);
-            n.multiplyBy10(d);
-            if (result.compareTo(n) > 0) {
-                /*
-                 * In this case, we need to try again because generated number
-                 * is greater than n; the recursive call's argument is not
-                 * "smaller" than the incoming value of n, but this recursive
-                 * call has no more than a 90% chance of being made (and for
-                 * large n, far less than that), so the probability of
-                 * termination is 1
-                 */
-                result = randomNumber(n);
+            NaturalNumber3 a = new NaturalNumber3(n);
+            NaturalNumber3 b = new NaturalNumber3(m);
+            if (strategy == GcdStrategy.BINARY) {
+                a.binaryGcd(b);
+            } else {
+                a.lehmerGcd(b);
+            }
+            if (n instanceof NaturalNumber3) {
+                n.transferFrom(a);
+            } else {
+                n.copyFrom(a);
             }
+            m.clear();
         }
-        return result;
     }
 
     /**
-     * Finds the greatest common divisor of n and m.
+     * Finds the greatest common divisor of n and m by Euclid's algorithm.
      *
      * @param n
      *            one number (ends as the GCD)
@@ -91,7 +206,8 @@ public final class CryptoUtilities {
      * @clears m
      * @ensures n = [greatest common divisor of #n and #m]
      */
-    public static void reduceToGCD(NaturalNumber n, NaturalNumber m) {
+    private static void reduceToGCDByDivision(NaturalNumber n,
+            NaturalNumber m) {
 
         /*
          * Use Euclid's algorithm; in pseudocode: if m = 0 then GCD(n, m) = n
@@ -104,8 +220,8 @@ public final class CryptoUtilities {
          * values between m and n
          */
         NaturalNumber remainder;
-        NaturalNumber zero = new NaturalNumber2(0);
-        NaturalNumber temp = new NaturalNumber2(0);
+        NaturalNumber zero = newNaturalNumber(n, 0);
+        NaturalNumber temp = newNaturalNumber(n, 0);
         if (m.isZero()) {
             /* If m is 0, copy m to n since 0 is the GCD */
             n.copyFrom(m);
@@ -139,6 +255,110 @@ public final class CryptoUtilities {
         }
     }
 
+    /**
+     * Finds the greatest common divisor g of n and m together with Bezout
+     * coefficients: natural numbers x and y with x * n - y * m = g.
+     *
+     * @param n
+     *            one number (ends as the GCD)
+     * @param m
+     *            the other number
+     * @param x
+     *            the coefficient of n
+     * @param y
+     *            the coefficient of m
+     * @updates n
+     * @replaces x, y
+     * @requires n > 0 and m > 0
+     * @ensures <pre>
+     * n = [greatest common divisor of #n and m]  and
+     * x * #n - y * m = n  and  x <= m / n  and  y <= #n / n
+     * </pre>
+     */
+    public static void extendedGCD(NaturalNumber n, NaturalNumber m,
+            NaturalNumber x, NaturalNumber y) {
+        assert !n.isZero() : "Violation of: n > 0";
+        assert !m.isZero() : "Violation of: m > 0";
+
+        /*
+         * Euclid's algorithm on r0 = n, r1 = m, carrying the cofactors with
+         * s_i * n + t_i * m = r_i. Their signs alternate from step to step, so
+         * only the magnitudes are kept, and s_(i+1) = s_(i-1) + q * s_i
+         * (likewise t). All updates are in place on a fixed set of registers;
+         * the remainder returned by divide is the only new number per step.
+         */
+        NaturalNumber r0 = copyOf(n);
+        NaturalNumber r1 = copyOf(m);
+        NaturalNumber s0 = newNaturalNumber(n, 1);
+        NaturalNumber s1 = newNaturalNumber(n, 0);
+        NaturalNumber t0 = newNaturalNumber(n, 0);
+        NaturalNumber t1 = newNaturalNumber(n, 1);
+        NaturalNumber temp = n.newInstance();
+        boolean oddSteps = false;
+        while (!r1.isZero()) {
+            NaturalNumber remainder = r0.divide(r1);
+            temp.copyFrom(s1);
+            temp.multiply(r0);
+            temp.add(s0);
+            s0.transferFrom(s1);
+            s1.transferFrom(temp);
+            temp.copyFrom(t1);
+            temp.multiply(r0);
+            temp.add(t0);
+            t0.transferFrom(t1);
+            t1.transferFrom(temp);
+            r0.transferFrom(r1);
+            r1.transferFrom(remainder);
+            oddSteps = !oddSteps;
+        }
+        /*
+         * After an even number of steps g = s * n - t * m; after an odd
+         * number g = t * m - s * n, and the next cofactors are m / g and
+         * n / g, which turn it around: g = (m / g - s) * n - (n / g - t) * m
+         */
+        if (oddSteps) {
+            s1.subtract(s0);
+            t1.subtract(t0);
+            x.transferFrom(s1);
+            y.transferFrom(t1);
+        } else {
+            x.transferFrom(s0);
+            y.transferFrom(t0);
+        }
+        n.transferFrom(r0);
+    }
+
+    /**
+     * Replaces n by its inverse modulo m, e.g., the RSA private exponent
+     * d = e^(-1) mod phi.
+     *
+     * @param n
+     *            the number to invert
+     * @param m
+     *            the modulus
+     * @updates n
+     * @requires m > 1 and [greatest common divisor of n and m] = 1
+     * @ensures 0 < n < m and (#n * n) mod m = 1
+     */
+    public static void modInverse(NaturalNumber n, NaturalNumber m) {
+        assert m.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: m > 1";
+
+        if (n.compareTo(m) >= 0) {
+            NaturalNumber remainder = n.divide(m);
+            n.transferFrom(remainder);
+        }
+        NaturalNumber x = n.newInstance();
+        NaturalNumber y = n.newInstance();
+        extendedGCD(n, m, x, y);
+        assert n.compareTo(new NaturalNumber2(1)) == 0
+                : "Violation of: [greatest common divisor of n and m] = 1";
+        /*
+         * x * n - y * m = 1, so x is the inverse, and x <= m / 1; x = m only
+         * if n = 0 mod m, which the requires clause rules out
+         */
+        n.transferFrom(x);
+    }
+
     /**
      * Reports whether n is even.
      *
@@ -156,8 +376,8 @@ public final class CryptoUtilities {
          * is set to the remainder of nCopy / 2
          */
         boolean isEven = false;
-        NaturalNumber nCopy = new NaturalNumber2(n);
-        NaturalNumber two = new NaturalNumber2(2);
+        NaturalNumber nCopy = copyOf(n);
+        NaturalNumber two = newNaturalNumber(n, 2);
         NaturalNumber remainder = nCopy.divide(two);
         /* If the remainder is 0, set isEven to true */
         if (remainder.isZero()) {
@@ -167,9 +387,30 @@ public final class CryptoUtilities {
         return isEven;
     }
 
+    /**
+     * Reports whether the last decimal digit of n is 5.
+     *
+     * @param n
+     *            the number to check
+     * @return true iff n mod 10 = 5
+     * @ensures endsInFive = (n mod 10 = 5)
+     */
+    private static boolean endsInFive(NaturalNumber n) {
+        int d = n.divideBy10();
+        n.multiplyBy10(d);
+        return d == FIVE;
+    }
+
     /**
      * Updates n to its p-th power modulo m.
      *
+     * When n, p and m are all below 10^18 this runs on longs. Otherwise the
+     * fast path is Montgomery multiplication (see {@link MontgomeryContext}),
+     * which needs m odd for a NaturalNumber3 and gcd(m, 10) = 1 for any other
+     * implementation; every other m, e.g. a multiple of 5 that is not a
+     * NaturalNumber3, falls back to reducing each product by a long division
+     * by m.
+     *
      * @param n
      *            number to be raised to a power
      * @param p
@@ -184,6 +425,118 @@ public final class CryptoUtilities {
             NaturalNumber m) {
         assert m.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: m > 1";
 
+        /*
+         * When a Montgomery context can handle m, build one so every step is
+         * reduced by multiply-and-shift instead of a long division by m;
+         * otherwise fall back to reducing by division
+         */
+        long mLong = LongCryptoUtilities.toLong(m);
+        long nLong = -1;
+        long pLong = -1;
+        if (mLong >= 0) {
+            nLong = LongCryptoUtilities.toLong(n);
+            pLong = LongCryptoUtilities.toLong(p);
+        }
+        if (nLong >= 0 && pLong >= 0 && mLong >= 0) {
+            /*
+             * Everything fits in a long, so use primitive arithmetic
+             */
+            LongCryptoUtilities.setFromLong(n,
+                    LongCryptoUtilities.powerMod(nLong, pLong, mLong));
+        } else if (MontgomeryContext.canHandle(m)) {
+            new MontgomeryContext(m).powerMod(n, p);
+        } else {
+            powerModByDivision(n, p, m);
+        }
+    }
+
+    /**
+     * Updates n to its p-th power modulo m, where m is the modulus of the
+     * given workspace. The workspace's registers are reused, so repeated
+     * calls with the same modulus allocate only O(1) objects each, however
+     * large p is.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @param workspace
+     *            registers for the modulus m = workspace.modulus()
+     * @updates n
+     * @requires n is not p
+     * @ensures n = #n ^ (p) mod m
+     */
+    public static void powerMod(NaturalNumber n, NaturalNumber p,
+            PowerModWorkspace workspace) {
+        assert n != p : "Violation of: n is not p";
+
+        powerMod(n, p, workspace, 0);
+    }
+
+    /**
+     * Updates n to its p-th power modulo m, where m is the modulus of the
+     * given workspace, using sliding windows of k exponent bits when a
+     * Montgomery context can handle m (m odd for a NaturalNumber3,
+     * gcd(m, 10) = 1 otherwise). A window of 1 is plain square-and-multiply,
+     * and 0 picks the window from the length of p (see
+     * {@link MontgomeryContext#windowBits(int)}).
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @param workspace
+     *            registers for the modulus m = workspace.modulus()
+     * @param k
+     *            the window size, or 0 to pick it from the length of p
+     * @updates n
+     * @requires <pre>
+     * n is not p  and  0 <= k <= MontgomeryContext.MAX_WINDOW_BITS
+     * </pre>
+     * @ensures n = #n ^ (p) mod m
+     */
+    public static void powerMod(NaturalNumber n, NaturalNumber p,
+            PowerModWorkspace workspace, int k) {
+        assert n != p : "Violation of: n is not p";
+        assert 0 <= k : "Violation of: 0 <= k";
+        assert k <= MontgomeryContext.MAX_WINDOW_BITS
+                : "Violation of: k <= MontgomeryContext.MAX_WINDOW_BITS";
+
+        long mLong = LongCryptoUtilities.toLong(workspace.modulus());
+        long nLong = -1;
+        long pLong = -1;
+        if (mLong >= 0) {
+            nLong = LongCryptoUtilities.toLong(n);
+            pLong = LongCryptoUtilities.toLong(p);
+        }
+        if (nLong >= 0 && pLong >= 0 && mLong >= 0) {
+            /*
+             * Everything fits in a long, so use primitive arithmetic
+             */
+            LongCryptoUtilities.setFromLong(n,
+                    LongCryptoUtilities.powerMod(nLong, pLong, mLong));
+        } else {
+            workspace.powerMod(n, p, k);
+        }
+    }
+
+    /**
+     * Updates n to its p-th power modulo m, reducing each step by dividing by
+     * m.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @param m
+     *            the modulus
+     * @updates n
+     * @requires m > 1
+     * @ensures n = #n ^ (p) mod m
+     */
+    private static void powerModByDivision(NaturalNumber n, NaturalNumber p,
+            NaturalNumber m) {
+
         /*
          * Use the fast-powering algorithm as previously discussed in class,
          * with the additional feature that every multiplication is followed
@@ -198,23 +551,23 @@ public final class CryptoUtilities {
          * if the p % 2 is zero - oldN: old value of n stored so the changed
          * value of n can be multiplied by it if p is an odd exponent
          */
-        NaturalNumber one = new NaturalNumber2(1);
-        NaturalNumber two = new NaturalNumber2(2);
-        NaturalNumber pDivBy2 = new NaturalNumber2(p);
+        NaturalNumber one = newNaturalNumber(n, 1);
+        NaturalNumber two = newNaturalNumber(n, 2);
+        NaturalNumber pDivBy2 = copyOf(p);
         NaturalNumber remainder = pDivBy2.divide(two);
-        NaturalNumber oldN = new NaturalNumber2(n);
+        NaturalNumber oldN = copyOf(n);
         /* Fast power method is applied if p isn't 0 */
         if (!p.isZero()) {
             /* Recursion to set result to n to the p/2 power */
-            powerMod(n, pDivBy2, m);
+            powerModByDivision(n, pDivBy2, m);
             /* multiply n by a copy of itself to get the square */
-            n.multiply(new NaturalNumber2(n));
+            n.multiply(copyOf(n));
             /* Multiply the result by original n if it is odd */
             if (!remainder.isZero()) {
                 n.multiply(oldN);
             }
             /* Temporarily store the remainder of n^p mod m */
-            NaturalNumber temp = new NaturalNumber2(n.divide(m));
+            NaturalNumber temp = copyOf(n.divide(m));
             /* Copy temporary value to n */
             n.copyFrom(temp);
         } else {
@@ -247,37 +600,94 @@ public final class CryptoUtilities {
         assert w.compareTo(n) < 0 : "Violation of: w < n - 1";
         n.increment();
 
-        /*
-         * Variables: isWitness - initially set to false but may change in if
-         * statement - remainders 1 and 2: remainders to be calculated using
-         * powerMod function - two: NaturalNumber for 2 used to get square of w
-         * - one: NaturalNumber of 1 used to compare remainder variables to 1 -
-         * nCopy: copy of n made to get n - 1 while preserving original n in the
-         * calculation of remainder2
-         */
         boolean isWitness = false;
-        NaturalNumber remainder1 = new NaturalNumber2(w);
-        NaturalNumber remainder2 = new NaturalNumber2(w);
-        NaturalNumber two = new NaturalNumber2(2);
-        NaturalNumber one = new NaturalNumber2(1);
-        NaturalNumber nCopy = new NaturalNumber2(n);
-        nCopy.decrement();
-        /* Calculate the remainder of w^2 / n and store in remainder1 */
-        powerMod(remainder1, two, n);
-        /* Calculate the remainder of w^(n-1) / n and store in remainder2 */
-        powerMod(remainder2, nCopy, n);
+        long nLong = LongCryptoUtilities.toLong(n);
+        if (nLong >= 0) {
+            /*
+             * If n fits in a long, so does w, so use primitive arithmetic
+             */
+            isWitness = LongCryptoUtilities.isWitnessToCompositeness(
+                    LongCryptoUtilities.toLong(w), nLong);
+        } else if (MontgomeryContext.canHandle(n)) {
+            /*
+             * If a Montgomery context can handle n, build one and use it for
+             * both powers
+             */
+            isWitness = isWitnessToCompositeness(w, new MontgomeryContext(n));
+        } else {
+            /*
+             * Variables: isWitness - initially set to false but may change in
+             * if statement - remainders 1 and 2: remainders to be calculated
+             * using powerMod function - two: NaturalNumber for 2 used to get
+             * square of w - one: NaturalNumber of 1 used to compare remainder
+             * variables to 1 - nCopy: copy of n made to get n - 1 while
+             * preserving original n in the calculation of remainder2
+             */
+            NaturalNumber remainder1 = copyOf(w);
+            NaturalNumber remainder2 = copyOf(w);
+            NaturalNumber two = newNaturalNumber(n, 2);
+            NaturalNumber one = newNaturalNumber(n, 1);
+            NaturalNumber nCopy = copyOf(n);
+            nCopy.decrement();
+            PowerModWorkspace workspace = new PowerModWorkspace(n);
+            /* Calculate the remainder of w^2 / n and store in remainder1 */
+            powerMod(remainder1, two, workspace);
+            /*
+             * Calculate the remainder of w^(n-1) / n and store in remainder2
+             */
+            powerMod(remainder2, nCopy, workspace);
 
-        /*
-         * Checks if either of the witness to compositeness conditions are true;
-         * if so, set isWitness to true
-         */
-        if (remainder1.compareTo(one) == 0 || remainder2.compareTo(one) != 0) {
-            isWitness = true;
+            /*
+             * Checks if either of the witness to compositeness conditions are
+             * true; if so, set isWitness to true
+             */
+            if (remainder1.compareTo(one) == 0
+                    || remainder2.compareTo(one) != 0) {
+                isWitness = true;
+            }
         }
         /* return isWitness */
         return isWitness;
     }
 
+    /**
+     * Reports whether w is a "witness" that n is composite, where n is the
+     * modulus of the given Montgomery context, so that repeated checks against
+     * the same n share a single context.
+     *
+     * @param w
+     *            witness candidate
+     * @param context
+     *            Montgomery context for the number n being checked
+     * @return true iff w is a "witness" that n is composite
+     * @requires n > 2 and 1 < w < n - 1, where n = context.modulus()
+     * @ensures <pre>
+     * isWitnessToCompositeness =
+     *     (w ^ 2 mod n = 1)  or  (w ^ (n-1) mod n /= 1)
+     * </pre>
+     */
+    public static boolean isWitnessToCompositeness(NaturalNumber w,
+            MontgomeryContext context) {
+        NaturalNumber n = context.modulus();
+        assert n.compareTo(new NaturalNumber2(2)) > 0 : "Violation of: n > 2";
+        assert (new NaturalNumber2(1)).compareTo(w) < 0 : "Violation of: 1 < w";
+        n.decrement();
+        assert w.compareTo(n) < 0 : "Violation of: w < n - 1";
+        n.increment();
+
+        /*
+         * Same check as above, with both powers computed by the context
+         */
+        NaturalNumber remainder1 = copyOf(w);
+        NaturalNumber remainder2 = copyOf(w);
+        NaturalNumber one = newNaturalNumber(n, 1);
+        NaturalNumber nMinus1 = copyOf(n);
+        nMinus1.decrement();
+        context.powerMod(remainder1, newNaturalNumber(n, 2));
+        context.powerMod(remainder2, nMinus1);
+        return remainder1.compareTo(one) == 0 || remainder2.compareTo(one) != 0;
+    }
+
     /**
      * Reports whether n is a prime; may be wrong with "low" probability.
      *
@@ -300,7 +710,13 @@ public final class CryptoUtilities {
          * will be assigned to it in every case of the if statement
          */
         boolean isPrime;
-        if (n.compareTo(new NaturalNumber2(THREE)) <= 0) {
+        long nLong = LongCryptoUtilities.toLong(n);
+        if (nLong >= 0) {
+            /*
+             * n fits in a long, so use primitive arithmetic
+             */
+            isPrime = LongCryptoUtilities.isPrime1(nLong);
+        } else if (n.compareTo(newNaturalNumber(n, THREE)) <= 0) {
             /*
              * 2 and 3 are primes; 1 and 0 don't matter due to requires clause
              */
@@ -315,84 +731,745 @@ public final class CryptoUtilities {
              * odd n >= 5: simply check whether 2 is a witness that n is
              * composite (which works surprisingly well :-)
              */
-            isPrime = !isWitnessToCompositeness(new NaturalNumber2(2), n);
+            isPrime = !isWitnessToCompositeness(newNaturalNumber(n, 2), n);
         }
         return isPrime;
     }
 
     /**
-     * Reports whether n is a prime; may be wrong with "low" probability.
+     * Replaces n by its odd part and reports how many factors of 2 it had.
      *
      * @param n
-     *            number to be checked
-     * @return true means n is very likely prime; false means n is definitely
-     *         composite
-     * @requires n > 1
+     *            the number to reduce
+     * @return the number of factors of 2 in #n
+     * @updates n
+     * @requires n > 0
+     * @ensures #n = n * 2^(removeFactorsOfTwo) and n is odd
+     */
+    public static int removeFactorsOfTwo(NaturalNumber n) {
+        assert !n.isZero() : "Violation of: n > 0";
+
+        NaturalNumber two = newNaturalNumber(n, 2);
+        NaturalNumber half = copyOf(n);
+        int count = 0;
+        while (half.divide(two).isZero()) {
+            n.copyFrom(half);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Reports whether w is a strong witness that n is composite (the
+     * Miller-Rabin test), where n is the modulus of the given Montgomery
+     * context and n - 1 = d * 2^s.
+     *
+     * @param w
+     *            witness candidate
+     * @param d
+     *            odd part of n - 1
+     * @param s
+     *            number of factors of 2 in n - 1
+     * @param context
+     *            Montgomery context for the number n being checked
+     * @return true iff w is a strong witness that n is composite
+     * @requires <pre>
+     * n > 2 and 1 < w < n - 1 and n - 1 = d * 2^s and d is odd,
+     *   where n = context.modulus()
+     * </pre>
      * @ensures <pre>
-     * isPrime2 = [n is a prime number, with small probability of error
-     *         if it is reported to be prime, and no chance of error if it is
-     *         reported to be composite]
+     * isStrongWitnessToCompositeness =
+     *     (w ^ d mod n /= 1)  and
+     *     (for all r: integer where (0 <= r < s)
+     *        (w ^ (d * 2^r) mod n /= n - 1))
      * </pre>
      */
-    public static boolean isPrime2(NaturalNumber n) {
-        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
-
-        /*
-         * Use the ability to generate random numbers (provided by the
-         * randomNumber method above) to generate several witness candidates --
-         * say, 10 to 50 candidates -- guessing that n is prime only if none of
-         * these candidates is a witness to n being composite (based on fact #3
-         * as described in the project description); use the code for isPrime1
-         * as a guide for how to do this, and pay attention to the requires
-         * clause of isWitnessToCompositeness
-         */
+    public static boolean isStrongWitnessToCompositeness(NaturalNumber w,
+            NaturalNumber d, int s, MontgomeryContext context) {
+        NaturalNumber n = context.modulus();
+        assert n.compareTo(new NaturalNumber2(2)) > 0 : "Violation of: n > 2";
+        assert (new NaturalNumber2(1)).compareTo(w) < 0 : "Violation of: 1 < w";
+        n.decrement();
+        assert w.compareTo(n) < 0 : "Violation of: w < n - 1";
+        n.increment();
 
         /*
-         * Declare variables: - nCopy: copy of n to get the range for the random
-         * number - four: int of 4 because n must be at least 2 and the range
-         * for isWitnessToCompositeness must be at least 2 less than n, making
-         * the interval for possible random numbers 2 + 2 = 4 smaller than n - 0
-         * - iterations: number of times a random candidate for
-         * isWitnessToCompositeness will be generated - isPrime: boolean to be
-         * returned stating if n is prime or not; no initialization needed
-         * because all if statement conditions set it to a boolean value
+         * x = w^d mod n; w is not a witness if x is 1 or n - 1
          */
-        NaturalNumber nCopy = new NaturalNumber2(n);
-        final int four = 4;
-        NaturalNumber randomRangeDecrement = new NaturalNumber2(four);
-        NaturalNumber random = new NaturalNumber2(0);
-        final int iterations = 30;
+        NaturalNumber one = newNaturalNumber(n, 1);
+        NaturalNumber minusOne = copyOf(n);
+        minusOne.decrement();
+        NaturalNumber x = copyOf(w);
+        context.powerMod(x, d);
+        boolean isWitness = x.compareTo(one) != 0
+                && x.compareTo(minusOne) != 0;
+        if (isWitness) {
+            /*
+             * Keep squaring, in Montgomery form, up to s - 1 times; w is not a
+             * witness if x reaches n - 1 (a nontrivial square root of 1 shows
+             * up as x reaching 1 first)
+             */
+            context.toMontgomery(x);
+            context.toMontgomery(one);
+            context.toMontgomery(minusOne);
+            for (int r = 1; isWitness && r < s && x.compareTo(one) != 0; r++) {
+                context.square(x);
+                isWitness = x.compareTo(minusOne) != 0;
+            }
+        }
+        return isWitness;
+    }
+
+    /**
+     * Reports whether n is a prime; may be wrong with "low" probability.
+     *
+     * @param n
+     *            number to be checked
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1
+     * @ensures <pre>
+     * isPrime2 = [n is a prime number, with small probability of error
+     *         if it is reported to be prime, and no chance of error if it is
+     *         reported to be composite]
+     * </pre>
+     */
+    public static boolean isPrime2(NaturalNumber n) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+
+        return isPrime2(n, ITERATIONS);
+    }
+
+    /**
+     * Reports whether n is a prime using the strong (Miller-Rabin) test. Below
+     * 2^64 a fixed set of witnesses makes the answer exact; at or above 2^64,
+     * {@code rounds} random witnesses are tried, so a composite n is reported
+     * prime with probability at most 4^(-rounds). Even numbers and odd
+     * multiples of 5 are rejected up front; every other odd n is one a
+     * {@link MontgomeryContext} can handle (gcd(n, 10) = 1), so the witness
+     * checks always run in Montgomery form.
+     *
+     * @param n
+     *            number to be checked
+     * @param rounds
+     *            number of random witnesses to try for n >= 2^64
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1 and rounds > 0
+     * @ensures <pre>
+     * isPrime2 = [n is a prime number, with probability at most
+     *         4^(-rounds) of error if it is reported to be prime, and no
+     *         chance of error if it is reported to be composite]
+     * </pre>
+     */
+    public static boolean isPrime2(NaturalNumber n, int rounds) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+        assert rounds > 0 : "Violation of: rounds > 0";
+
+        return isPrime2(n, rounds, GENERATOR);
+    }
+
+    /**
+     * Reports whether n is a prime using the strong (Miller-Rabin) test, as
+     * {@code isPrime2(n, rounds)} does, drawing the random witnesses from the
+     * given source. A seeded source (see {@link RandomSources#seeded(long)})
+     * makes the witnesses, and so any error, reproducible.
+     *
+     * @param n
+     *            number to be checked
+     * @param rounds
+     *            number of random witnesses to try for n >= 2^64
+     * @param source
+     *            the source of random witnesses
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1 and rounds > 0
+     * @ensures <pre>
+     * isPrime2 = [n is a prime number, with probability at most
+     *         4^(-rounds) of error if it is reported to be prime, and no
+     *         chance of error if it is reported to be composite]
+     * </pre>
+     */
+    public static boolean isPrime2(NaturalNumber n, int rounds,
+            RandomSource source) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+        assert rounds > 0 : "Violation of: rounds > 0";
+        assert source != null : "Violation of: source is not null";
+
+        /*
+         * Declare variables: - four: int of 4 because n must be at least 2 and
+         * the range for the witness check must be at least 2 less than n,
+         * making the interval for possible random numbers 2 + 2 = 4 smaller
+         * than n - 0 - isPrime: boolean to be returned stating if n is prime
+         * or not; no initialization needed because all if statement
+         * conditions set it to a boolean value
+         */
+        final int four = 4;
+        final int bitsInLong = 64;
         boolean isPrime;
-        if (n.compareTo(new NaturalNumber2(THREE)) <= 0) {
-            /* If n is 3 or 2, it is prime */
-            isPrime = true;
+        long nLong = LongCryptoUtilities.toLong(n);
+        if (nLong >= 0) {
+            /* If n fits in a long, use primitive arithmetic */
+            isPrime = LongCryptoUtilities.isPrime2(nLong);
         } else if (isEven(n)) {
             /* If n is even, it isn't prime */
             isPrime = false;
+        } else if (endsInFive(n)) {
+            /*
+             * An odd n ending in 5 is a multiple of 5 greater than 5, so it
+             * isn't prime; any other odd n is one a Montgomery context can
+             * handle
+             */
+            isPrime = false;
         } else {
             /*
-             * Otherwise, subtract 4 from nCopy and set isPrime to true
-             * initially
+             * Otherwise, build one Montgomery context for n and decompose
+             * n - 1 = d * 2^s once, to share among all the witness checks, and
+             * set isPrime to true initially
              */
-            nCopy.subtract(randomRangeDecrement);
+            MontgomeryContext context = new MontgomeryContext(n);
+            NaturalNumber d = copyOf(n);
+            d.decrement();
+            int s = removeFactorsOfTwo(d);
+            NaturalNumber twoToThe64 = newNaturalNumber(n, 2);
+            twoToThe64.power(bitsInLong);
+            NaturalNumber random = newNaturalNumber(n, 0);
             isPrime = true;
+            if (n.compareTo(twoToThe64) < 0) {
+                /*
+                 * Below 2^64 the fixed witnesses decide primality exactly
+                 */
+                for (int i = 0; isPrime
+                        && i < LongCryptoUtilities.WITNESSES.length; i++) {
+                    random.setFromInt((int) LongCryptoUtilities.WITNESSES[i]);
+                    if (isStrongWitnessToCompositeness(random, d, s, context)) {
+                        isPrime = false;
+                    }
+                }
+            } else {
+                /*
+                 * Repeat for specified amount of rounds, stopping at the first
+                 * witness: set random to a random number between 0 and n - 4,
+                 * add 2 so the range of the possible random number is between
+                 * 2 and n - 2 inclusive, check if random candidate is a strong
+                 * witness to compositeness and set isPrime to false if this is
+                 * the case
+                 */
+                NaturalNumber nCopy = copyOf(n);
+                nCopy.subtract(newNaturalNumber(n, four));
+                UniformSampler sampler = new UniformSampler(nCopy);
+                for (int i = 0; isPrime && i < rounds; i++) {
+                    sampler.next(random, source);
+                    random.increment();
+                    random.increment();
+                    if (isStrongWitnessToCompositeness(random, d, s, context)) {
+                        isPrime = false;
+                    }
+                }
+            }
+        }
+        /* return final value of isPrime */
+        return isPrime;
+    }
+
+    /**
+     * Reports whether n is a prime using the strong (Miller-Rabin) test, as
+     * {@code isPrime2(n, rounds)} does, with the rounds shared out among
+     * workers on pool. Each worker has its own copy of n, its own Montgomery
+     * context and its own random stream (see {@link WitnessSearch}), and all
+     * of them stop as soon as any one finds a witness. Below 2^64, where the
+     * test is exact and quick, or when pool has a single thread, this is the
+     * sequential isPrime2.
+     *
+     * @param n
+     *            number to be checked
+     * @param rounds
+     *            number of random witnesses to try for n >= 2^64
+     * @param pool
+     *            the pool to run the rounds on
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1 and rounds > 0
+     * @ensures <pre>
+     * isPrime2 = [n is a prime number, with probability at most
+     *         4^(-rounds) of error if it is reported to be prime, and no
+     *         chance of error if it is reported to be composite]
+     * </pre>
+     */
+    public static boolean isPrime2(NaturalNumber n, int rounds,
+            ForkJoinPool pool) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+        assert rounds > 0 : "Violation of: rounds > 0";
+        assert pool != null : "Violation of: pool is not null";
+
+        return isPrime2(n, rounds, GENERATOR, pool);
+    }
+
+    /**
+     * Reports whether n is a prime using the strong (Miller-Rabin) test, as
+     * {@code isPrime2(n, rounds, pool)} does, with the random witnesses
+     * coming from the given source. Each worker's stream is seeded by a draw
+     * from source on the calling thread, in worker order, so it does not
+     * matter which pool thread runs which worker: a seeded source (see
+     * {@link RandomSources#seeded(long)}) makes the witnesses every worker
+     * tries, and so the answer, reproducible.
+     *
+     * @param n
+     *            number to be checked
+     * @param rounds
+     *            number of random witnesses to try for n >= 2^64
+     * @param source
+     *            the source of random witnesses
+     * @param pool
+     *            the pool to run the rounds on
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1 and rounds > 0
+     * @ensures <pre>
+     * isPrime2 = [n is a prime number, with probability at most
+     *         4^(-rounds) of error if it is reported to be prime, and no
+     *         chance of error if it is reported to be composite]
+     * </pre>
+     */
+    public static boolean isPrime2(NaturalNumber n, int rounds,
+            RandomSource source, ForkJoinPool pool) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+        assert rounds > 0 : "Violation of: rounds > 0";
+        assert source != null : "Violation of: source is not null";
+        assert pool != null : "Violation of: pool is not null";
+
+        final int bitsInLong = 64;
+        int workers = Math.min(pool.getParallelism(), rounds);
+        boolean isPrime;
+        if (workers == 1 || UniformSampler.bitLength(n) <= bitsInLong
+                || isEven(n) || !MontgomeryContext.canHandle(n)) {
+            isPrime = isPrime2(n, rounds, source);
+        } else {
+            /*
+             * Deal the rounds out as evenly as possible, one worker per
+             * thread, each with its own copy of n and its own stream seeded
+             * from source here, before any worker starts
+             */
+            AtomicBoolean witnessed = new AtomicBoolean(false);
+            List<WitnessSearch> searches = new ArrayList<>();
+            for (int t = 0; t < workers; t++) {
+                int share = rounds / workers;
+                if (t < rounds % workers) {
+                    share++;
+                }
+                searches.add(new WitnessSearch(copyOf(n), share,
+                        RandomSources.seeded(source.nextLong()), witnessed));
+            }
+            for (WitnessSearch search : searches) {
+                pool.execute(search);
+            }
+            for (WitnessSearch search : searches) {
+                search.join();
+            }
+            isPrime = !witnessed.get();
+        }
+        return isPrime;
+    }
+
+    /**
+     * Returns log base 2 of x.
+     *
+     * @param x
+     *            the number
+     * @return log2(x)
+     * @requires x > 0
+     * @ensures log2 = [logarithm of x to base 2]
+     */
+    private static double log2(double x) {
+        return Math.log(x) / Math.log(2);
+    }
+
+    /**
+     * Reports the number of isPrime2 rounds that keeps the chance of calling a
+     * random odd composite of the given bit length prime below targetError.
+     *
+     * One round lets any composite through with probability at most 1/4, so
+     * ceil(log4(1 / targetError)) rounds always suffice. For a candidate
+     * chosen at random, far fewer do: by the bound of Damgard, Landrock and
+     * Pomerance, t rounds on a random odd k-bit number err with probability
+     * below k^(3/2) * 2^t * t^(-1/2) * 4^(2 - sqrt(t * k)), for k >= 21 and
+     * 3 <= t <= k / 9 (this gives the familiar tables, e.g., 3 rounds for
+     * error 2^(-80) at 1024 bits). The smaller of the two counts is reported.
+     *
+     * @param bits
+     *            the bit length of the candidate
+     * @param targetError
+     *            the largest acceptable probability of error
+     * @return the number of rounds
+     * @requires bits > 1 and 0 < targetError < 1
+     * @ensures <pre>
+     * roundsFor >= 1  and
+     * [roundsFor rounds call a random odd bits-bit composite prime with
+     *  probability below targetError]
+     * </pre>
+     */
+    public static int roundsFor(int bits, double targetError) {
+        assert bits > 1 : "Violation of: bits > 1";
+        assert 0 < targetError : "Violation of: 0 < targetError";
+        assert targetError < 1 : "Violation of: targetError < 1";
+
+        double errorBits = -log2(targetError);
+        int rounds = Math.max(1, (int) Math.ceil(errorBits / 2));
+        if (bits >= AVERAGE_CASE_MIN_BITS) {
+            boolean found = false;
+            for (int t = THREE; !found && t < rounds
+                    && t <= bits / AVERAGE_CASE_RATIO; t++) {
+                double log2Error = THREE * log2(bits) / 2 + t - log2(t) / 2
+                        + 2 * (2 - Math.sqrt((double) t * bits));
+                if (log2Error <= -errorBits) {
+                    rounds = t;
+                    found = true;
+                }
+            }
+        }
+        return rounds;
+    }
+
+    /**
+     * Reports whether n is a prime using isPrime2 with the number of rounds
+     * picked by {@link #roundsFor(int, double)} for the bit length of n. The
+     * error bound holds for n chosen at random; for a number an adversary may
+     * have picked, use {@code isPrime2(n, rounds)} with rounds =
+     * ceil(log4(1 / targetError)).
+     *
+     * @param n
+     *            number to be checked
+     * @param targetError
+     *            the largest acceptable probability of error
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1 and 0 < targetError < 1
+     * @ensures <pre>
+     * isPrime2 = [n is a prime number, with probability below targetError of
+     *         error if it is reported to be prime and n was chosen at random,
+     *         and no chance of error if it is reported to be composite]
+     * </pre>
+     */
+    public static boolean isPrime2ForError(NaturalNumber n,
+            double targetError) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+
+        return isPrime2(n,
+                roundsFor(UniformSampler.bitLength(n), targetError),
+                GENERATOR);
+    }
+
+    /**
+     * Reports whether n is a perfect square.
+     *
+     * @param n
+     *            the number to check
+     * @return true iff n is a perfect square
+     * @ensures isPerfectSquare = (there exists r: integer (n = r * r))
+     */
+    private static boolean isPerfectSquare(NaturalNumber n) {
+        /*
+         * Newton's method for floor(sqrt(n)), starting from a power of 10 that
+         * is at least sqrt(n) so the iterates decrease to the answer
+         */
+        NaturalNumber digitsLeft = copyOf(n);
+        NaturalNumber x = newNaturalNumber(n, 1);
+        while (!digitsLeft.isZero()) {
+            digitsLeft.divideBy10();
+            digitsLeft.divideBy10();
+            x.multiplyBy10(0);
+        }
+        NaturalNumber two = newNaturalNumber(n, 2);
+        boolean decreasing = true;
+        while (decreasing) {
+            NaturalNumber y = copyOf(n);
+            y.divide(x);
+            y.add(x);
+            y.divide(two);
+            decreasing = y.compareTo(x) < 0;
+            if (decreasing) {
+                x.transferFrom(y);
+            }
+        }
+        NaturalNumber square = copyOf(x);
+        square.multiply(x);
+        return square.compareTo(n) == 0;
+    }
+
+    /**
+     * Returns the Jacobi symbol (a/n) for a small, possibly negative, a.
+     *
+     * @param a
+     *            the "numerator"
+     * @param n
+     *            the "denominator"
+     * @return (a/n), which is -1, 0 or 1
+     * @requires a /= 0 and n > 0 and n is odd
+     * @ensures jacobi = [the Jacobi symbol (a/n)]
+     */
+    private static int jacobi(int a, NaturalNumber n) {
+        /*
+         * (a/n) only depends on n mod 4|a|, so reduce n to a small odd r with
+         * the same residue and finish with longs, using (-1/r) = 1 exactly
+         * when r = 1 (mod 4)
+         */
+        final int four = 4;
+        int absA = Math.abs(a);
+        NaturalNumber quotient = copyOf(n);
+        long r = quotient.divide(newNaturalNumber(n, four * absA)).toInt();
+        int result = LongCryptoUtilities.jacobi(absA, r);
+        if (a < 0 && r % four == THREE) {
+            result = -result;
+        }
+        return result;
+    }
+
+    /**
+     * Replaces x by x + y mod n.
+     *
+     * @param x
+     *            one number (ends as the sum)
+     * @param y
+     *            the other number
+     * @param n
+     *            the modulus
+     * @updates x
+     * @requires x < n and y < n
+     * @ensures x = (#x + y) mod n
+     */
+    private static void addMod(NaturalNumber x, NaturalNumber y,
+            NaturalNumber n) {
+        x.add(y);
+        if (x.compareTo(n) >= 0) {
+            x.subtract(n);
+        }
+    }
+
+    /**
+     * Replaces x by x - y mod n.
+     *
+     * @param x
+     *            one number (ends as the difference)
+     * @param y
+     *            the other number
+     * @param n
+     *            the modulus
+     * @updates x
+     * @requires x < n and y < n
+     * @ensures x = (#x - y) mod n
+     */
+    private static void subtractMod(NaturalNumber x, NaturalNumber y,
+            NaturalNumber n) {
+        if (x.compareTo(y) < 0) {
+            x.add(n);
+        }
+        x.subtract(y);
+    }
+
+    /**
+     * Replaces x by x / 2 mod n.
+     *
+     * @param x
+     *            the number to halve
+     * @param halfOfNPlus1
+     *            (n + 1) / 2, the inverse of 2 mod n
+     * @param n
+     *            the modulus
+     * @updates x
+     * @requires x < n and n is odd
+     * @ensures 2 * x = #x mod n
+     */
+    private static void halveMod(NaturalNumber x, NaturalNumber halfOfNPlus1,
+            NaturalNumber n) {
+        /*
+         * An odd x is x = 2k + 1, and (2k + 1) / 2 = k + (n + 1) / 2 mod n
+         */
+        NaturalNumber remainder = x.divide(newNaturalNumber(x, 2));
+        if (!remainder.isZero()) {
+            addMod(x, halfOfNPlus1, n);
+        }
+    }
+
+    /**
+     * Reports whether n passes the strong Lucas probable-prime test with
+     * parameters P = 1 and Q = (1 - D) / 4.
+     *
+     * @param d
+     *            the discriminant D
+     * @param context
+     *            Montgomery context for the number n being checked
+     * @return true iff n is a strong Lucas probable prime for (1, Q)
+     * @requires <pre>
+     * n is odd and n > 4|D| and (D/n) = -1 and gcd(n, Q) = 1,
+     *   where n = context.modulus()
+     * </pre>
+     * @ensures <pre>
+     * isStrongLucasProbablePrime = [with n + 1 = k * 2^s and k odd,
+     *   U_k = 0 (mod n) or V_(k * 2^r) = 0 (mod n) for some 0 <= r < s]
+     * </pre>
+     */
+    private static boolean isStrongLucasProbablePrime(int d,
+            MontgomeryContext context) {
+        final int four = 4;
+        NaturalNumber n = context.modulus();
+        /*
+         * k = odd part of n + 1, and its bits, most significant first
+         */
+        NaturalNumber k = copyOf(n);
+        k.increment();
+        int s = removeFactorsOfTwo(k);
+        NaturalNumber two = newNaturalNumber(n, 2);
+        NaturalNumber bitsLeft = copyOf(k);
+        int bitCount = 0;
+        while (!bitsLeft.isZero()) {
+            bitsLeft.divide(two);
+            bitCount++;
+        }
+        boolean[] bits = new boolean[bitCount];
+        for (int i = bitCount - 1; i >= 0; i--) {
+            bits[i] = !k.divide(two).isZero();
+        }
+        /*
+         * D and Q as residues mod n, all constants in Montgomery form
+         */
+        int q = (1 - d) / four;
+        NaturalNumber dMod = newNaturalNumber(n, Math.abs(d));
+        if (d < 0) {
+            NaturalNumber negative = copyOf(n);
+            negative.subtract(dMod);
+            dMod.transferFrom(negative);
+        }
+        NaturalNumber qMod = newNaturalNumber(n, Math.abs(q));
+        if (q < 0) {
+            NaturalNumber negative = copyOf(n);
+            negative.subtract(qMod);
+            qMod.transferFrom(negative);
+        }
+        context.toMontgomery(dMod);
+        context.toMontgomery(qMod);
+        NaturalNumber halfOfNPlus1 = copyOf(n);
+        halfOfNPlus1.increment();
+        halfOfNPlus1.divide(two);
+        /*
+         * Left-to-right Lucas chain from (U_1, V_1, Q^1) = (1, P, Q) = (1, 1,
+         * Q), doubling the index for each bit and adding one for each 1 bit:
+         * U_2j = U_j V_j, V_2j = V_j^2 - 2Q^j, U_(j+1) = (P U_j + V_j) / 2,
+         * V_(j+1) = (D U_j + P V_j) / 2
+         */
+        NaturalNumber u = newNaturalNumber(n, 1);
+        context.toMontgomery(u);
+        NaturalNumber v = copyOf(u);
+        NaturalNumber qPower = copyOf(qMod);
+        NaturalNumber temp = n.newInstance();
+        for (int i = 1; i < bitCount; i++) {
+            context.multiply(u, v);
+            context.square(v);
+            temp.copyFrom(qPower);
+            addMod(temp, qPower, n);
+            subtractMod(v, temp, n);
+            context.square(qPower);
+            if (bits[i]) {
+                temp.copyFrom(u);
+                context.multiply(temp, dMod);
+                addMod(u, v, n);
+                halveMod(u, halfOfNPlus1, n);
+                addMod(v, temp, n);
+                halveMod(v, halfOfNPlus1, n);
+                context.multiply(qPower, qMod);
+            }
+        }
+        /*
+         * n passes if U_k = 0, or V_(k * 2^r) = 0 for some 0 <= r < s, using
+         * V_2j = V_j^2 - 2Q^j again
+         */
+        boolean passes = u.isZero() || v.isZero();
+        for (int r = 1; !passes && r < s; r++) {
+            context.square(v);
+            temp.copyFrom(qPower);
+            addMod(temp, qPower, n);
+            subtractMod(v, temp, n);
+            context.square(qPower);
+            passes = v.isZero();
+        }
+        return passes;
+    }
+
+    /**
+     * Reports whether n is a prime using the Baillie-PSW test: a strong test
+     * to base 2 followed by a strong Lucas test. No composite number is known
+     * to pass it.
+     *
+     * @param n
+     *            number to be checked
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1
+     * @ensures <pre>
+     * isPrimeBPSW = [n is a prime number, with tiny probability of error
+     *         if it is reported to be prime, and no chance of error if it is
+     *         reported to be composite]
+     * </pre>
+     */
+    public static boolean isPrimeBPSW(NaturalNumber n) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+
+        /*
+         * Try at most this many discriminants before checking whether n is a
+         * perfect square (for which no D has (D/n) = -1)
+         */
+        final int triesBeforeSquareCheck = 10;
+        boolean isPrime;
+        long nLong = LongCryptoUtilities.toLong(n);
+        if (nLong >= 0) {
+            /* If n fits in a long, the deterministic test is exact */
+            isPrime = LongCryptoUtilities.isPrime2(nLong);
+        } else if (isEven(n) || endsInFive(n)) {
+            /* Even numbers and multiples of 5 aren't prime */
+            isPrime = false;
+        } else {
             /*
-             * Repeat for specified amount of iterations: set randomNumber to a
-             * random number between 0 and n - 4, add 2 so the range of the
-             * possible random number is between 2 and n - 2 inclusive, check if
-             * random candidate is a witness to compositeness and set isPrime to
-             * true if this is the case
+             * Strong test to base 2, with n - 1 = d * 2^s
              */
-            for (int i = 0; i < iterations; i++) {
-                random.copyFrom(randomNumber(nCopy));
-                random.increment();
-                random.increment();
-                if (isWitnessToCompositeness(random, n)) {
+            MontgomeryContext context = new MontgomeryContext(n);
+            NaturalNumber d = copyOf(n);
+            d.decrement();
+            int s = removeFactorsOfTwo(d);
+            isPrime = !isStrongWitnessToCompositeness(newNaturalNumber(n, 2),
+                    d, s, context);
+            if (isPrime) {
+                /*
+                 * Selfridge's choice of D: the first of 5, -7, 9, -11, ... with
+                 * (D/n) = -1; (D/n) = 0 means |D| shares a factor with n
+                 */
+                int discriminant = FIVE;
+                int symbol = jacobi(discriminant, n);
+                int tries = 1;
+                while (isPrime && symbol == 1) {
+                    if (tries == triesBeforeSquareCheck && isPerfectSquare(n)) {
+                        isPrime = false;
+                    } else {
+                        if (discriminant > 0) {
+                            discriminant = -discriminant - 2;
+                        } else {
+                            discriminant = -discriminant + 2;
+                        }
+                        symbol = jacobi(discriminant, n);
+                        tries++;
+                    }
+                }
+                /*
+                 * Q = (1 - D) / 4 must also be coprime to n
+                 */
+                final int four = 4;
+                int q = (1 - discriminant) / four;
+                if (symbol == 0 || (q != 1 && q != -1 && jacobi(q, n) == 0)) {
                     isPrime = false;
                 }
+                if (isPrime) {
+                    isPrime = isStrongLucasProbablePrime(discriminant, context);
+                }
             }
         }
-        /* return final value of isPrime */
         return isPrime;
     }
 
@@ -418,7 +1495,7 @@ public final class CryptoUtilities {
          * NaturalNumber set to 2 in order to increment n
          */
         boolean isPrime = false;
-        NaturalNumber two = new NaturalNumber2(2);
+        NaturalNumber two = newNaturalNumber(n, 2);
         /*
          * Increments n to the next odd number to avoid returning the same
          * number, also noting that all even numbers aren't prime
@@ -428,14 +1505,218 @@ public final class CryptoUtilities {
         } else {
             n.add(two);
         }
-        /* While n isn't prime, keep adding two to it until it is prime */
-        while (!isPrime) {
-            isPrime = isPrime2(n);
-            if (!isPrime) {
-                n.add(two);
+        if (n.compareTo(newNaturalNumber(n, SmallPrimes.largest())) <= 0) {
+            /* While n isn't prime, keep adding two to it until it is prime */
+            while (!isPrime) {
+                isPrime = isPrime2(n);
+                if (!isPrime) {
+                    n.add(two);
+                }
+            }
+        } else {
+            /*
+             * Compute n mod each small prime once, then sieve windows of odd
+             * candidates n, n + 2, ..., running isPrime2 only on candidates
+             * with no small factor; moving to the next window just updates
+             * the residues
+             */
+            int[] residues = SmallPrimes.residues(n);
+            boolean[] composite = new boolean[SIEVE_WINDOW];
+            NaturalNumber candidate = n.newInstance();
+            NaturalNumber offset = n.newInstance();
+            while (!isPrime) {
+                SmallPrimes.sieveOddWindow(residues, composite);
+                for (int i = 0; !isPrime && i < SIEVE_WINDOW; i++) {
+                    if (!composite[i]) {
+                        candidate.copyFrom(n);
+                        offset.setFromInt(2 * i);
+                        candidate.add(offset);
+                        isPrime = isPrime2(candidate);
+                    }
+                }
+                if (isPrime) {
+                    n.transferFrom(candidate);
+                } else {
+                    offset.setFromInt(2 * SIEVE_WINDOW);
+                    n.add(offset);
+                    SmallPrimes.advance(residues, 2 * SIEVE_WINDOW);
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates a likely prime number at least as large as some given number,
+     * testing candidates on the given fork-join pool. The result is the same
+     * as that of {@code generateNextLikelyPrime(n)}, whatever the parallelism
+     * of the pool.
+     *
+     * @param n
+     *            minimum value of likely prime
+     * @param pool
+     *            the pool to run the search on
+     * @updates n
+     * @requires n > 1
+     * @ensures n >= #n and [n is very likely a prime number]
+     */
+    public static void generateNextLikelyPrime(NaturalNumber n,
+            ForkJoinPool pool) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+        assert pool != null : "Violation of: pool is not null";
+
+        /*
+         * Find the first odd candidate the same way the sequential version
+         * does; below the small prime table, or with nothing to run in
+         * parallel, just use the sequential version
+         */
+        NaturalNumber start = copyOf(n);
+        if (isEven(start)) {
+            start.increment();
+        } else {
+            start.add(newNaturalNumber(n, 2));
+        }
+        int workers = pool.getParallelism();
+        if (workers == 1 || start.compareTo(
+                newNaturalNumber(n, SmallPrimes.largest())) <= 0) {
+            generateNextLikelyPrime(n);
+        } else {
+            /*
+             * Hand each worker an interleaved share of the windows, and its
+             * own copy of start, made here rather than on a pool thread; once
+             * all have stopped, the answer is the one from the smallest window
+             * published, and windows past it have been abandoned
+             */
+            int[] residues = SmallPrimes.residues(start);
+            AtomicLong settled = new AtomicLong(Long.MAX_VALUE);
+            List<PrimeWindowSearch> searches = new ArrayList<>();
+            for (int t = 0; t < workers; t++) {
+                searches.add(new PrimeWindowSearch(copyOf(start), residues, t,
+                        workers, SIEVE_WINDOW, settled));
+            }
+            for (PrimeWindowSearch search : searches) {
+                pool.execute(search);
+            }
+            for (PrimeWindowSearch search : searches) {
+                NaturalNumber result = search.join();
+                if (search.found() == settled.get()) {
+                    n.transferFrom(result);
+                }
             }
         }
+    }
+
+    /**
+     * Reports whether q and p = 2q + 1 are both (likely) prime, running the
+     * cheapest tests first: a base-2 test on q (half the size of p), then a
+     * base-2 test on p, and only then the full isPrime2 on q. Once q is prime,
+     * 2^(p - 1) = 1 (mod p) together with gcd(3, p) = 1 proves p prime by
+     * Pocklington's criterion, since q > sqrt(p); so p needs no isPrime2.
+     *
+     * @param q
+     *            the candidate Sophie Germain prime
+     * @param p
+     *            2q + 1
+     * @return true iff both pass
+     * @requires q > 3 and p = 2q + 1 and p mod 3 /= 0
+     * @ensures <pre>
+     * isSafePrimePair = [q is very likely prime and, if it is, p is prime]
+     * </pre>
+     */
+    private static boolean isSafePrimePair(NaturalNumber q, NaturalNumber p) {
+        NaturalNumber two = newNaturalNumber(q, 2);
+        return !isWitnessToCompositeness(two, q)
+                && !isWitnessToCompositeness(two, p) && isPrime2(q);
+    }
+
+    /**
+     * Generates a likely safe prime p = 2q + 1, with q also prime, larger
+     * than a given number.
+     *
+     * Above the small prime table the candidates q (odd, counting up) are
+     * sieved in windows twice over: once against the residues of q and once
+     * against the residues of 2q + 1, which steps by 4 as q steps by 2 (see
+     * {@link SmallPrimes#markWindow}). Only pairs where neither number has a
+     * small factor reach the probabilistic tests, which then run on q before
+     * p (see isSafePrimePair).
+     *
+     * @param n
+     *            lower bound of the safe prime
+     * @updates n
+     * @requires n > 1
+     * @ensures <pre>
+     * n > #n  and  [n is very likely prime]  and
+     * [(n - 1) / 2 is very likely prime]
+     * </pre>
+     */
+    public static void generateNextSafePrime(NaturalNumber n) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
 
+        /*
+         * Smallest q with 2q + 1 > n is q = floor((n + 1) / 2), and q must be
+         * at least 2
+         */
+        NaturalNumber two = newNaturalNumber(n, 2);
+        NaturalNumber q = copyOf(n);
+        q.increment();
+        q.divide(two);
+        if (q.compareTo(two) < 0) {
+            q.copyFrom(two);
+        }
+        NaturalNumber p = n.newInstance();
+        boolean found = false;
+        if (q.compareTo(newNaturalNumber(n, SmallPrimes.largest())) <= 0) {
+            /*
+             * Small q: just test q, q + 1, q + 2, ... until q and 2q + 1 are
+             * both prime; both tests are cheap at this size
+             */
+            while (!found) {
+                p.copyFrom(q);
+                p.multiply(two);
+                p.increment();
+                found = isPrime2(q) && isPrime2(p);
+                if (!found) {
+                    q.increment();
+                }
+            }
+        } else {
+            /*
+             * Odd q only; mark each window from the residues of q (step 2)
+             * and of 2q + 1 (step 4), then test the survivors
+             */
+            if (isEven(q)) {
+                q.increment();
+            }
+            NaturalNumber start = copyOf(q);
+            start.multiply(two);
+            start.increment();
+            int[] qResidues = SmallPrimes.residues(q);
+            int[] pResidues = SmallPrimes.residues(start);
+            boolean[] composite = new boolean[SIEVE_WINDOW];
+            NaturalNumber candidate = n.newInstance();
+            NaturalNumber offset = n.newInstance();
+            while (!found) {
+                SmallPrimes.sieveOddWindow(qResidues, composite);
+                SmallPrimes.markWindow(pResidues, 2, composite);
+                for (int i = 0; !found && i < SIEVE_WINDOW; i++) {
+                    if (!composite[i]) {
+                        candidate.copyFrom(q);
+                        offset.setFromInt(2 * i);
+                        candidate.add(offset);
+                        p.copyFrom(candidate);
+                        p.multiply(two);
+                        p.increment();
+                        found = isSafePrimePair(candidate, p);
+                    }
+                }
+                if (!found) {
+                    offset.setFromInt(2 * SIEVE_WINDOW);
+                    q.add(offset);
+                    SmallPrimes.advance(qResidues, 2 * SIEVE_WINDOW);
+                    SmallPrimes.advance(pResidues, 2 * 2 * SIEVE_WINDOW);
+                }
+            }
+        }
+        n.transferFrom(p);
     }
 
     /**
@@ -472,7 +1753,7 @@ public final class CryptoUtilities {
 
         /*
          * Check user-supplied numbers for primality, and if a number is not
-         * prime, find the next likely prime after it
+         * prime, factor it and find the next likely prime after it
          */
         while (true) {
             out.print("n = ");
@@ -494,6 +1775,15 @@ public final class CryptoUtilities {
                 } else {
                     out.println(n + " is a composite number"
                             + " according to isPrime2.");
+                    List<NaturalNumber> factors = Factorization.factor(n);
+                    StringBuilder product = new StringBuilder();
+                    for (NaturalNumber factor : factors) {
+                        if (product.length() > 0) {
+                            product.append(" * ");
+                        }
+                        product.append(factor);
+                    }
+                    out.println("  factorization is " + product);
                     generateNextLikelyPrime(n);
                     out.println("  next likely prime is " + n);
                 }
@@ -0,0 +1,232 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Reusable buffer holding the binary digits of an exponent, so that
+ * exponentiation can walk the bits of the exponent from the most significant
+ * one down without dividing a NaturalNumber by 2 (and allocating a remainder)
+ * at every step.
+ *
+ * The limbs of a {@link NaturalNumber3} exponent are already binary, so they
+ * are just repacked from 32 to 30 bits each. For any other implementation the
+ * decimal digits of the exponent are read with divideBy10 (and put back with
+ * multiplyBy10), then converted to base 2^30 in int arithmetic. The arrays
+ * only grow, so once a buffer has seen an exponent of a given size, loading
+ * another exponent of that size allocates nothing.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+final class ExponentBits {
+
+    /**
+     * Number of bits per limb.
+     */
+    private static final int LIMB_BITS = 30;
+
+    /**
+     * Mask of the low LIMB_BITS bits.
+     */
+    private static final int LIMB_MASK = (1 << LIMB_BITS) - 1;
+
+    /**
+     * Number of bits in a NaturalNumber3 limb.
+     */
+    private static final int SOURCE_LIMB_BITS = 32;
+
+    /**
+     * Number of decimal digits folded into the limbs at a time.
+     */
+    private static final int CHUNK_DIGITS = 9;
+
+    /**
+     * Useful constant, not a magic number: 10.
+     */
+    private static final int TEN = 10;
+
+    /**
+     * Decimal digits of the exponent, least significant first.
+     */
+    private int[] digits = new int[0];
+
+    /**
+     * The exponent in base 2^30, least significant limb first.
+     */
+    private int[] limbs = new int[0];
+
+    /**
+     * Number of bits of the exponent (0 for the exponent 0).
+     */
+    private int bitLength;
+
+    /**
+     * Loads the bits of p.
+     *
+     * @param p
+     *            the exponent, not modified
+     * @return the number of bits of p
+     * @ensures <pre>
+     * load = [number of bits of p]  and
+     * [for all i < load, this.testBit(i) = bit i of p]
+     * </pre>
+     */
+    int load(NaturalNumber p) {
+        int length;
+        if (p instanceof NaturalNumber3) {
+            length = this.loadLimbs((NaturalNumber3) p);
+        } else {
+            length = this.loadDigits(p);
+        }
+        this.bitLength = 0;
+        if (length > 0) {
+            this.bitLength = (length - 1) * LIMB_BITS + Integer.SIZE
+                    - Integer.numberOfLeadingZeros(this.limbs[length - 1]);
+        }
+        return this.bitLength;
+    }
+
+    /**
+     * Makes sure there is room for at least capacity limbs.
+     *
+     * @param capacity
+     *            the number of limbs needed
+     * @updates this.limbs
+     * @ensures |this.limbs| >= capacity
+     */
+    private void ensureCapacity(int capacity) {
+        if (this.limbs.length < capacity) {
+            this.limbs = new int[capacity];
+        }
+    }
+
+    /**
+     * Loads the limbs of p by repacking its 32-bit limbs into 30-bit ones.
+     *
+     * @param p
+     *            the exponent, not modified
+     * @return the number of 30-bit limbs of p
+     * @ensures this.limbs[0, loadLimbs) = [p in base 2^30, no leading zeros]
+     */
+    private int loadLimbs(NaturalNumber3 p) {
+        int words = p.limbCount();
+        this.ensureCapacity(words * SOURCE_LIMB_BITS / LIMB_BITS + 1);
+        /*
+         * Feed 32 bits at a time into a bit buffer and take 30 bits out at a
+         * time; the buffer never holds more than 29 + 32 bits
+         */
+        long buffer = 0;
+        int buffered = 0;
+        int length = 0;
+        for (int i = 0; i < words; i++) {
+            buffer |= p.limb(i) << buffered;
+            buffered += SOURCE_LIMB_BITS;
+            while (buffered >= LIMB_BITS) {
+                this.limbs[length] = (int) (buffer & LIMB_MASK);
+                buffer >>>= LIMB_BITS;
+                buffered -= LIMB_BITS;
+                length++;
+            }
+        }
+        this.limbs[length] = (int) buffer;
+        length++;
+        while (length > 0 && this.limbs[length - 1] == 0) {
+            length--;
+        }
+        return length;
+    }
+
+    /**
+     * Loads the limbs of p from its decimal digits.
+     *
+     * @param p
+     *            the exponent, not modified
+     * @return the number of 30-bit limbs of p
+     * @ensures this.limbs[0, loadDigits) = [p in base 2^30, no leading zeros]
+     */
+    private int loadDigits(NaturalNumber p) {
+        /*
+         * Read the decimal digits off p, then put them back
+         */
+        int count = 0;
+        while (!p.isZero()) {
+            if (count == this.digits.length) {
+                int[] grown = new int[2 * count + 1];
+                System.arraycopy(this.digits, 0, grown, 0, count);
+                this.digits = grown;
+            }
+            this.digits[count] = p.divideBy10();
+            count++;
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            p.multiplyBy10(this.digits[i]);
+        }
+        /*
+         * Fold the digits into the limbs from the most significant end,
+         * limbs = limbs * 10^c + chunk, c digits at a time; log2(10) < 10/3,
+         * so the limbs need fewer than count / 9 + 1 slots
+         */
+        this.ensureCapacity(count / CHUNK_DIGITS + 1);
+        int length = 0;
+        int i = count;
+        while (i > 0) {
+            int c = Math.min(CHUNK_DIGITS, i);
+            long scale = 1;
+            long carry = 0;
+            for (int j = 0; j < c; j++) {
+                i--;
+                scale *= TEN;
+                carry = carry * TEN + this.digits[i];
+            }
+            for (int j = 0; j < length; j++) {
+                long t = this.limbs[j] * scale + carry;
+                this.limbs[j] = (int) (t & LIMB_MASK);
+                carry = t >>> LIMB_BITS;
+            }
+            while (carry != 0) {
+                this.limbs[length] = (int) (carry & LIMB_MASK);
+                carry >>>= LIMB_BITS;
+                length++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Reports bit i of the exponent last loaded.
+     *
+     * @param i
+     *            the bit position, 0 being the least significant
+     * @return true iff bit i is 1
+     * @requires 0 <= i < [number of bits of the exponent last loaded]
+     * @ensures testBit = [bit i of the exponent last loaded is 1]
+     */
+    boolean testBit(int i) {
+        assert 0 <= i : "Violation of: 0 <= i";
+        assert i < this.bitLength : "Violation of: i < bit length";
+
+        return ((this.limbs[i / LIMB_BITS] >>> (i % LIMB_BITS)) & 1) != 0;
+    }
+
+    /**
+     * Reports the value of the k bits of the exponent last loaded starting at
+     * position i, i.e., floor(p / 2^i) mod 2^k.
+     *
+     * @param i
+     *            the lowest bit position
+     * @param k
+     *            the number of bits
+     * @return the bits, as an int
+     * @requires 0 <= i and 0 < k < 31 and i + k <= [number of bits]
+     * @ensures bits = floor(p / 2^i) mod 2^k
+     */
+    int bits(int i, int k) {
+        int result = 0;
+        for (int j = i + k - 1; j >= i; j--) {
+            result = 2 * result;
+            if (this.testBit(j)) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+}
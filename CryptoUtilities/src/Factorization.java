@@ -0,0 +1,287 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Factors NaturalNumbers into primes.
+ *
+ * Small factors are found first by trial division by the primes of
+ * {@link SmallPrimes}: the residues of n modulo all of them are computed at
+ * once, and n is only divided by the primes whose residue is 0. Whatever is
+ * left has no factor below 2^15; it is split by Pollard's rho method with
+ * Brent's cycle detection until every piece passes isPrime2.
+ *
+ * Rho looks for x and y in the sequence y -> y^2 + c with gcd(|x - y|, m) > 1,
+ * and a GCD per step would cost far more than the step itself. Instead the
+ * differences are multiplied together modulo m, and reduceToGCD is called
+ * once per BATCH steps on the product; if a batch overshoots (the product
+ * picks up every prime of m at once), the batch is replayed one GCD per step
+ * from the saved start. After trial division m is prime to 10, so the steps
+ * run in Montgomery form, which only changes the sequence, not the GCDs.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public final class Factorization {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Factorization() {
+    }
+
+    /**
+     * Number of rho steps whose differences are multiplied together before
+     * each GCD.
+     */
+    private static final int BATCH = 100;
+
+    /**
+     * Useful constant, not a magic number: 4.
+     */
+    private static final int FOUR = 4;
+
+    /**
+     * Returns the prime factorization of n, using per-thread randomness.
+     *
+     * @param n
+     *            the number to factor, not modified
+     * @return the prime factors of n, with repetitions, in increasing order
+     * @requires n > 0
+     * @ensures <pre>
+     * [the product of the entries of factor is n]  and
+     * [every entry of factor is very likely prime]  and
+     * [the entries of factor are in increasing order]
+     * </pre>
+     */
+    public static List<NaturalNumber> factor(NaturalNumber n) {
+        return factor(n, RandomSources.perThread());
+    }
+
+    /**
+     * Returns the prime factorization of n, with the starting points of the
+     * rho sequences drawn from source.
+     *
+     * @param n
+     *            the number to factor, not modified
+     * @param source
+     *            the source of randomness
+     * @return the prime factors of n, with repetitions, in increasing order
+     * @requires n > 0
+     * @ensures <pre>
+     * [the product of the entries of factor is n]  and
+     * [every entry of factor is very likely prime]  and
+     * [the entries of factor are in increasing order]
+     * </pre>
+     */
+    public static List<NaturalNumber> factor(NaturalNumber n,
+            RandomSource source) {
+        assert !n.isZero() : "Violation of: n > 0";
+
+        List<NaturalNumber> factors = new ArrayList<>();
+        NaturalNumber m = CryptoUtilities.copyOf(n);
+        NaturalNumber one = CryptoUtilities.newNaturalNumber(n, 1);
+        /*
+         * Trial division by the small primes that divide n
+         */
+        int[] residues = SmallPrimes.residues(m);
+        for (int i = 0; i < residues.length; i++) {
+            if (residues[i] == 0) {
+                NaturalNumber p = CryptoUtilities.newNaturalNumber(n,
+                        SmallPrimes.prime(i));
+                NaturalNumber quotient = CryptoUtilities.copyOf(m);
+                while (quotient.divide(p).isZero()) {
+                    m.copyFrom(quotient);
+                    factors.add(CryptoUtilities.copyOf(p));
+                }
+            }
+        }
+        /*
+         * What is left has no factor below 2^15, so it is prime if it is less
+         * than the square of the largest small prime
+         */
+        if (m.compareTo(one) > 0) {
+            int largest = SmallPrimes.largest();
+            NaturalNumber bound = CryptoUtilities.newNaturalNumber(n, largest);
+            bound.multiply(CryptoUtilities.newNaturalNumber(n, largest));
+            if (m.compareTo(bound) <= 0) {
+                factors.add(m);
+            } else {
+                split(m, factors, source);
+            }
+        }
+        factors.sort(NaturalNumber::compareTo);
+        return factors;
+    }
+
+    /**
+     * Adds the prime factors of m to factors.
+     *
+     * @param m
+     *            the number to factor
+     * @param factors
+     *            the factors found so far
+     * @param source
+     *            the source of randomness
+     * @updates factors
+     * @requires m > 1 and [m has no factor below 2^15]
+     * @ensures factors = #factors * [the prime factors of m]
+     */
+    private static void split(NaturalNumber m, List<NaturalNumber> factors,
+            RandomSource source) {
+        if (CryptoUtilities.isPrime2(m)) {
+            factors.add(m);
+        } else {
+            NaturalNumber d = brent(m, source);
+            NaturalNumber cofactor = CryptoUtilities.copyOf(m);
+            cofactor.divide(d);
+            split(d, factors, source);
+            split(cofactor, factors, source);
+        }
+    }
+
+    /**
+     * Returns gcd(a, m).
+     *
+     * @param a
+     *            one number, not modified
+     * @param m
+     *            the other number, not modified
+     * @return the greatest common divisor
+     * @requires m > 0
+     * @ensures gcd = [greatest common divisor of a and m]
+     */
+    private static NaturalNumber gcd(NaturalNumber a, NaturalNumber m) {
+        NaturalNumber result = CryptoUtilities.copyOf(m);
+        if (!a.isZero()) {
+            CryptoUtilities.reduceToGCD(result, CryptoUtilities.copyOf(a));
+        }
+        return result;
+    }
+
+    /**
+     * Replaces diff by |x - y|.
+     *
+     * @param diff
+     *            the result
+     * @param x
+     *            one number
+     * @param y
+     *            the other number
+     * @replaces diff
+     * @ensures diff = |x - y|
+     */
+    private static void distance(NaturalNumber diff, NaturalNumber x,
+            NaturalNumber y) {
+        if (x.compareTo(y) >= 0) {
+            diff.copyFrom(x);
+            diff.subtract(y);
+        } else {
+            diff.copyFrom(y);
+            diff.subtract(x);
+        }
+    }
+
+    /**
+     * Advances y one step of the rho sequence, y -> y^2 + c (in Montgomery
+     * form) mod m.
+     *
+     * @param y
+     *            the sequence value
+     * @param c
+     *            the constant of the sequence
+     * @param context
+     *            Montgomery context for m
+     * @updates y
+     * @requires y < m and c < m
+     * @ensures y = (#y * #y * R^(-1) + c) mod m
+     */
+    private static void step(NaturalNumber y, NaturalNumber c,
+            MontgomeryContext context) {
+        context.square(y);
+        y.add(c);
+        if (y.compareTo(context.modulus()) >= 0) {
+            y.subtract(context.modulus());
+        }
+    }
+
+    /**
+     * Returns a nontrivial factor of m by Pollard's rho method with Brent's
+     * cycle detection and batched GCDs.
+     *
+     * @param m
+     *            the number to split, not modified
+     * @param source
+     *            the source of randomness
+     * @return a factor d of m with 1 < d < m
+     * @requires <pre>
+     * m is composite  and  gcd(m, 10) = 1  and
+     * [m has no factor below 2^15]
+     * </pre>
+     * @ensures 1 < brent < m and m mod brent = 0
+     */
+    private static NaturalNumber brent(NaturalNumber m, RandomSource source) {
+        MontgomeryContext context = new MontgomeryContext(m);
+        NaturalNumber one = CryptoUtilities.newNaturalNumber(m, 1);
+        NaturalNumber mMinus1 = CryptoUtilities.copyOf(m);
+        mMinus1.decrement();
+        NaturalNumber mMinus4 = CryptoUtilities.copyOf(m);
+        mMinus4.subtract(CryptoUtilities.newNaturalNumber(m, FOUR));
+        UniformSampler ySampler = new UniformSampler(mMinus1);
+        UniformSampler cSampler = new UniformSampler(mMinus4);
+
+        NaturalNumber x = m.newInstance();
+        NaturalNumber ys = m.newInstance();
+        NaturalNumber diff = m.newInstance();
+        NaturalNumber g = CryptoUtilities.copyOf(m);
+        while (g.compareTo(m) == 0) {
+            /*
+             * New sequence: y0 in [0, m - 1], c in [1, m - 3] (c = 0 and
+             * c = -2 give degenerate sequences)
+             */
+            NaturalNumber y = ySampler.next(source);
+            NaturalNumber c = cSampler.next(source);
+            c.increment();
+            NaturalNumber q = CryptoUtilities.copyOf(one);
+            g.copyFrom(one);
+            int r = 1;
+            while (g.compareTo(one) == 0) {
+                /*
+                 * x is the value at the last power of 2; compare it with the
+                 * next r values, BATCH differences per GCD
+                 */
+                x.copyFrom(y);
+                for (int i = 0; i < r; i++) {
+                    step(y, c, context);
+                }
+                int k = 0;
+                while (k < r && g.compareTo(one) == 0) {
+                    ys.copyFrom(y);
+                    int steps = Math.min(BATCH, r - k);
+                    for (int i = 0; i < steps; i++) {
+                        step(y, c, context);
+                        distance(diff, x, y);
+                        context.multiply(q, diff);
+                    }
+                    g = gcd(q, m);
+                    k += steps;
+                }
+                r *= 2;
+            }
+            if (g.compareTo(m) == 0) {
+                /*
+                 * The batch found every factor at once; replay it from its
+                 * start one GCD at a time
+                 */
+                do {
+                    step(ys, c, context);
+                    distance(diff, x, ys);
+                    g = gcd(diff, m);
+                } while (g.compareTo(one) == 0);
+            }
+        }
+        return g;
+    }
+
+}
@@ -0,0 +1,276 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Modular exponentiation of a fixed base g modulo a fixed modulus m, for
+ * workloads that raise the same base to many different exponents.
+ *
+ * The exponent is split into digits of k bits, p = sum of e_i * 2^(k*i), so
+ * g^p = product of G_i^(e_i) with G_i = g^(2^(k*i)) mod m. The G_i are
+ * computed once and kept in a table; each exponentiation then needs no
+ * squarings at all, only about bits / k + 2^k multiplies (Yao's method):
+ * B collects the G_i whose digit is at least j, for j = 2^k - 1 down to 1,
+ * and the running product A = A * B after each j gives every G_i exactly e_i
+ * times. The table covers exponents as long as m when it is built, and grows
+ * when a longer exponent comes along.
+ *
+ * When {@link MontgomeryContext#canHandle(NaturalNumber)} holds for m (m odd
+ * for a NaturalNumber3, gcd(m, 10) = 1 otherwise), the table and the
+ * products are kept in Montgomery form; otherwise each product is reduced by
+ * dividing by m. An object keeps registers of its own, so it must not be used
+ * by more than one thread at a time.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public final class FixedBasePowerMod {
+
+    /**
+     * Largest digit size accepted.
+     */
+    public static final int MAX_WINDOW_BITS = 10;
+
+    /**
+     * The modulus m.
+     */
+    private final NaturalNumber modulus;
+
+    /**
+     * Montgomery context for m, or null if it cannot handle m.
+     */
+    private final MontgomeryContext context;
+
+    /**
+     * Number of bits per exponent digit.
+     */
+    private final int k;
+
+    /**
+     * 1, in the form the table is kept in.
+     */
+    private final NaturalNumber one;
+
+    /**
+     * table[i] = g^(2^(k*i)) mod m, in the form the products are kept in.
+     */
+    private NaturalNumber[] table;
+
+    /**
+     * The running product B of Yao's method.
+     */
+    private final NaturalNumber partial;
+
+    /**
+     * Scratch register for squaring while the table grows.
+     */
+    private final NaturalNumber scratch;
+
+    /**
+     * Bits of the exponent during powerMod.
+     */
+    private final ExponentBits exponent = new ExponentBits();
+
+    /**
+     * Digits of the exponent during powerMod, least significant first.
+     */
+    private int[] digits = new int[0];
+
+    /**
+     * Constructor picking the digit size from the length of m.
+     *
+     * @param g
+     *            the base, not modified
+     * @param m
+     *            the modulus, not modified
+     * @requires m > 1
+     * @ensures this raises g to powers modulo m
+     */
+    public FixedBasePowerMod(NaturalNumber g, NaturalNumber m) {
+        this(g, m, windowBits(UniformSampler.bitLength(m)));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param g
+     *            the base, not modified
+     * @param m
+     *            the modulus, not modified
+     * @param k
+     *            the number of bits per exponent digit
+     * @requires m > 1 and 1 <= k <= MAX_WINDOW_BITS
+     * @ensures this raises g to powers modulo m, k exponent bits at a time
+     */
+    public FixedBasePowerMod(NaturalNumber g, NaturalNumber m, int k) {
+        assert m.compareTo(CryptoUtilities.newNaturalNumber(m, 1)) > 0
+                : "Violation of: m > 1";
+        assert 1 <= k : "Violation of: 1 <= k";
+        assert k <= MAX_WINDOW_BITS : "Violation of: k <= MAX_WINDOW_BITS";
+
+        this.modulus = CryptoUtilities.copyOf(m);
+        this.k = k;
+        this.partial = m.newInstance();
+        this.scratch = m.newInstance();
+        MontgomeryContext montgomery = null;
+        if (MontgomeryContext.canHandle(m)) {
+            montgomery = new MontgomeryContext(m);
+        }
+        this.context = montgomery;
+        /*
+         * Put 1 and g into the working form, then fill the table far enough
+         * for exponents as long as m
+         */
+        this.one = CryptoUtilities.newNaturalNumber(m, 1);
+        NaturalNumber base = CryptoUtilities.copyOf(g);
+        if (this.context != null) {
+            this.context.toMontgomery(this.one);
+            this.context.toMontgomery(base);
+        } else {
+            this.reduce(this.one);
+            this.reduce(base);
+        }
+        this.table = new NaturalNumber[] { base };
+        int bits = UniformSampler.bitLength(m);
+        this.growTable((bits + k - 1) / k);
+    }
+
+    /**
+     * Reports the digit size for exponents with the given number of bits:
+     * the k >= 1 that minimizes the multiplies per exponentiation,
+     * ceil(exponentBits / k) + 2^k.
+     *
+     * @param exponentBits
+     *            number of bits of the exponent
+     * @return the digit size
+     * @ensures 1 <= windowBits <= MAX_WINDOW_BITS
+     */
+    public static int windowBits(int exponentBits) {
+        int best = 1;
+        long bestCost = Long.MAX_VALUE;
+        for (int j = 1; j <= MAX_WINDOW_BITS; j++) {
+            long cost = (exponentBits + j - 1) / j + (1L << j);
+            if (cost < bestCost) {
+                best = j;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Reports the modulus.
+     *
+     * @return the modulus
+     * @aliases reference returned by {@code modulus}
+     * @ensures modulus = m
+     */
+    public NaturalNumber modulus() {
+        return this.modulus;
+    }
+
+    /**
+     * Replaces n by g^p mod m.
+     *
+     * @param n
+     *            the result
+     * @param p
+     *            the power, not modified
+     * @replaces n
+     * @requires n is not p
+     * @ensures n = g ^ (p) mod m
+     */
+    public void powerMod(NaturalNumber n, NaturalNumber p) {
+        /*
+         * Cut p into k-bit digits, growing the table if p is longer than any
+         * exponent seen so far
+         */
+        int bits = this.exponent.load(p);
+        int count = (bits + this.k - 1) / this.k;
+        this.growTable(count);
+        if (this.digits.length < count) {
+            this.digits = new int[count];
+        }
+        int top = 0;
+        for (int i = 0; i < count; i++) {
+            int width = Math.min(this.k, bits - this.k * i);
+            this.digits[i] = this.exponent.bits(this.k * i, width);
+            top = Math.max(top, this.digits[i]);
+        }
+        /*
+         * Yao's method: after the pass for j, partial is the product of the
+         * G_i with digit >= j, and n has been multiplied by it once for each
+         * j' >= j, so each G_i ends up in n exactly digit_i times
+         */
+        n.copyFrom(this.one);
+        this.partial.copyFrom(this.one);
+        for (int j = top; j >= 1; j--) {
+            for (int i = 0; i < count; i++) {
+                if (this.digits[i] == j) {
+                    this.multiply(this.partial, this.table[i]);
+                }
+            }
+            this.multiply(n, this.partial);
+        }
+        if (this.context != null) {
+            this.context.fromMontgomery(n);
+        }
+    }
+
+    /**
+     * Makes sure the table holds at least size entries.
+     *
+     * @param size
+     *            the number of entries needed
+     * @updates this.table
+     * @ensures |this.table| >= size
+     */
+    private void growTable(int size) {
+        if (this.table.length < size) {
+            NaturalNumber[] grown = new NaturalNumber[size];
+            System.arraycopy(this.table, 0, grown, 0, this.table.length);
+            for (int i = this.table.length; i < size; i++) {
+                grown[i] = CryptoUtilities.copyOf(grown[i - 1]);
+                for (int j = 0; j < this.k; j++) {
+                    this.scratch.copyFrom(grown[i]);
+                    this.multiply(grown[i], this.scratch);
+                }
+            }
+            this.table = grown;
+        }
+    }
+
+    /**
+     * Multiplies a by b modulo m, in the form the table is kept in.
+     *
+     * @param a
+     *            the first factor (ends as the product)
+     * @param b
+     *            the second factor
+     * @updates a
+     * @requires a < m and b < m and a is not b
+     * @ensures a = [#a * b modulo m, in the working form]
+     */
+    private void multiply(NaturalNumber a, NaturalNumber b) {
+        if (this.context != null) {
+            this.context.multiply(a, b);
+        } else {
+            a.multiply(b);
+            this.reduce(a);
+        }
+    }
+
+    /**
+     * Replaces t by t mod m.
+     *
+     * @param t
+     *            the number to reduce
+     * @updates t
+     * @ensures t = #t mod m
+     */
+    private void reduce(NaturalNumber t) {
+        if (t.compareTo(this.modulus) >= 0) {
+            NaturalNumber remainder = t.divide(this.modulus);
+            t.transferFrom(remainder);
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+/**
+ * Algorithms {@code CryptoUtilities.reduceToGCD} can use to find a greatest
+ * common divisor. They all give the same results; they differ only in speed.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public enum GcdStrategy {
+
+    /**
+     * Euclid's algorithm, with one NaturalNumber division per step.
+     */
+    EUCLID,
+
+    /**
+     * The binary (Stein) algorithm on machine words: only shifts,
+     * comparisons and subtractions.
+     */
+    BINARY,
+
+    /**
+     * Lehmer's algorithm on machine words: Euclid's quotients are found from
+     * the leading bits of the numbers, so most steps need no division.
+     */
+    LEHMER
+
+}
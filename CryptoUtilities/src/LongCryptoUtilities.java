@@ -0,0 +1,583 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Versions of the {@code CryptoUtilities} primality operations on primitive
+ * {@code long} values, used automatically by {@code CryptoUtilities} when the
+ * numbers involved are less than 10^18. Nothing here allocates: products are
+ * formed with {@code Math.multiplyHigh} as 128-bit values and reduced with
+ * 64-bit Montgomery arithmetic (R = 2^64) for odd moduli.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public final class LongCryptoUtilities {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private LongCryptoUtilities() {
+    }
+
+    /**
+     * Useful constant, not a magic number: 3.
+     */
+    private static final int THREE = 3;
+
+    /**
+     * Useful constant, not a magic number: 10.
+     */
+    private static final int TEN = 10;
+
+    /**
+     * Number of bits in a long.
+     */
+    private static final int LONG_BITS = 64;
+
+    /**
+     * Numbers with at most this many digits are handled as longs.
+     */
+    private static final int MAX_DIGITS = 18;
+
+    /**
+     * 10^18, the bound below which numbers are handled as longs.
+     */
+    private static final long BOUND = 1000000000000000000L;
+
+    /**
+     * Number of bits in a NaturalNumber3 limb.
+     */
+    private static final int LIMB_BITS = 32;
+
+    /**
+     * Number of Newton steps to get an inverse modulo 2^64 starting from 3
+     * correct bits (3, 6, 12, 24, 48, 96).
+     */
+    private static final int NEWTON_STEPS = 5;
+
+    /**
+     * Bound below which {@code SMALL_WITNESSES} decide primality.
+     */
+    private static final long SMALL_WITNESS_BOUND = 4759123141L;
+
+    /**
+     * Strong-test witnesses that make the test deterministic for every odd n
+     * less than {@code SMALL_WITNESS_BOUND} (Jaeschke).
+     */
+    private static final long[] SMALL_WITNESSES = { 2, 7, 61 };
+
+    /**
+     * Strong-test witnesses that make the test deterministic for every odd n
+     * less than 2^64 (Sinclair); {@code CryptoUtilities} also uses them for
+     * numbers too big for a long but still less than 2^64.
+     */
+    static final long[] WITNESSES = { 2, 325, 9375, 28178, 450775,
+        9780504, 1795265022 };
+
+    /**
+     * Reports the value of n as a long if n < 10^18, and -1 otherwise. The
+     * long fast path starts below 10^18, not at the top of the long range, so
+     * the same numbers take it whatever the implementation of n.
+     *
+     * For a {@link NaturalNumber3} this reads at most two limbs, after
+     * checking the limb count, and allocates nothing. For any other
+     * implementation it takes off up to 18 decimal digits with divideBy10 and
+     * puts them back with multiplyBy10.
+     *
+     * @param n
+     *            the number to convert
+     * @return n, or -1 if n >= 10^18
+     * @ensures <pre>
+     * toLong = [if n < 10^18 then n else -1]
+     * </pre>
+     */
+    public static long toLong(NaturalNumber n) {
+        long result;
+        if (n instanceof NaturalNumber3) {
+            result = toLong((NaturalNumber3) n);
+        } else {
+            result = toLongByDigits(n);
+        }
+        return result;
+    }
+
+    /**
+     * Reports the value of n as a long if n < 10^18, and -1 otherwise,
+     * reading the limbs of n.
+     *
+     * @param n
+     *            the number to convert
+     * @return n, or -1 if n >= 10^18
+     * @ensures <pre>
+     * toLong = [if n < 10^18 then n else -1]
+     * </pre>
+     */
+    private static long toLong(NaturalNumber3 n) {
+        long result = -1;
+        int limbs = n.limbCount();
+        if (limbs <= 2) {
+            /*
+             * Two limbs may reach 2^64, which shows up as a negative long
+             */
+            long value = 0;
+            for (int i = limbs - 1; i >= 0; i--) {
+                value = (value << LIMB_BITS) | n.limb(i);
+            }
+            if (value >= 0 && value < BOUND) {
+                result = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reports the value of n as a long if n < 10^18, and -1 otherwise,
+     * reading the decimal digits of n.
+     *
+     * @param n
+     *            the number to convert
+     * @return n, or -1 if n >= 10^18
+     * @ensures <pre>
+     * toLong = [if n < 10^18 then n else -1]
+     * </pre>
+     */
+    private static long toLongByDigits(NaturalNumber n) {
+        /*
+         * Take off up to 18 low digits, then put them back
+         */
+        long low = 0;
+        long place = 1;
+        int count = 0;
+        while (count < MAX_DIGITS && !n.isZero()) {
+            low += n.divideBy10() * place;
+            place *= TEN;
+            count++;
+        }
+        long result = low;
+        if (!n.isZero()) {
+            result = -1;
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            place /= TEN;
+            n.multiplyBy10((int) (low / place % TEN));
+        }
+        return result;
+    }
+
+    /**
+     * Sets n to the given value.
+     *
+     * @param n
+     *            the number to set
+     * @param value
+     *            the new value
+     * @replaces n
+     * @requires value >= 0
+     * @ensures n = value
+     */
+    public static void setFromLong(NaturalNumber n, long value) {
+        assert value >= 0 : "Violation of: value >= 0";
+        n.clear();
+        long place = 1;
+        while (place <= value / TEN) {
+            place *= TEN;
+        }
+        if (value > 0) {
+            while (place > 0) {
+                n.multiplyBy10((int) (value / place % TEN));
+                place /= TEN;
+            }
+        }
+    }
+
+    /**
+     * Returns the high 64 bits of the unsigned 128-bit product of a and b.
+     *
+     * @param a
+     *            one factor, as an unsigned long
+     * @param b
+     *            the other factor, as an unsigned long
+     * @return floor(a * b / 2^64)
+     */
+    private static long multiplyHighUnsigned(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> (LONG_BITS - 1)) & b)
+                + ((b >> (LONG_BITS - 1)) & a);
+    }
+
+    /**
+     * Returns the inverse of odd m modulo 2^64.
+     *
+     * @param m
+     *            the number to invert
+     * @return m^(-1) mod 2^64
+     * @requires m is odd
+     * @ensures m * inverse = 1 mod 2^64
+     */
+    private static long inverse(long m) {
+        /*
+         * m * m = 1 mod 8 for odd m, and each Newton step doubles the number
+         * of correct bits
+         */
+        long x = m;
+        for (int i = 0; i < NEWTON_STEPS; i++) {
+            x *= 2 - m * x;
+        }
+        return x;
+    }
+
+    /**
+     * Montgomery reduction: returns (hi * 2^64 + lo) * 2^(-64) mod m.
+     *
+     * @param hi
+     *            high word of the value to reduce
+     * @param lo
+     *            low word of the value to reduce
+     * @param m
+     *            the modulus
+     * @param mInverse
+     *            m^(-1) mod 2^64
+     * @return the reduced value
+     * @requires m is odd and 0 < m < 2^63 and hi < m
+     * @ensures reduce = (hi * 2^64 + lo) * 2^(-64) mod m
+     */
+    private static long reduce(long hi, long lo, long m, long mInverse) {
+        /*
+         * q * m agrees with the value in its low word, so subtracting it
+         * leaves a multiple of 2^64 whose high word is in (-m, m)
+         */
+        long q = lo * mInverse;
+        long result = hi - multiplyHighUnsigned(q, m);
+        if (result < 0) {
+            result += m;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a * b * 2^(-64) mod m.
+     *
+     * @param a
+     *            one factor, in Montgomery form
+     * @param b
+     *            the other factor, in Montgomery form
+     * @param m
+     *            the modulus
+     * @param mInverse
+     *            m^(-1) mod 2^64
+     * @return the Montgomery product
+     * @requires m is odd and 0 < m < 2^63 and 0 <= a < m and 0 <= b < m
+     * @ensures multiplyMontgomery = a * b * 2^(-64) mod m
+     */
+    private static long multiplyMontgomery(long a, long b, long m,
+            long mInverse) {
+        return reduce(Math.multiplyHigh(a, b), a * b, m, mInverse);
+    }
+
+    /**
+     * Returns a * 2^64 mod m, by doubling 64 times.
+     *
+     * @param a
+     *            the number to convert
+     * @param m
+     *            the modulus
+     * @return a in Montgomery form
+     * @requires 0 < m < 2^63 and 0 <= a < m
+     * @ensures toMontgomery = a * 2^64 mod m
+     */
+    private static long toMontgomery(long a, long m) {
+        long result = a;
+        for (int i = 0; i < LONG_BITS; i++) {
+            result <<= 1;
+            if (result >= m || result < 0) {
+                result -= m;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a * b mod m.
+     *
+     * @param a
+     *            one factor
+     * @param b
+     *            the other factor
+     * @param m
+     *            the modulus
+     * @return a * b mod m
+     * @requires 0 < m < 2^63 and 0 <= a < m and 0 <= b < m
+     * @ensures multiplyMod = a * b mod m
+     */
+    public static long multiplyMod(long a, long b, long m) {
+        long result;
+        if (Math.multiplyHigh(a, b) == 0 && a * b >= 0) {
+            /*
+             * The product fits in a long
+             */
+            result = a * b % m;
+        } else {
+            /*
+             * Double-and-add over the bits of b; every intermediate value is
+             * less than 2m < 2^64
+             */
+            result = 0;
+            for (int i = LONG_BITS - 2; i >= 0; i--) {
+                result <<= 1;
+                if (result >= m || result < 0) {
+                    result -= m;
+                }
+                if (((b >>> i) & 1) != 0) {
+                    result += a;
+                    if (result >= m || result < 0) {
+                        result -= m;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns n to the p-th power modulo m.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @param m
+     *            the modulus
+     * @return n ^ (p) mod m
+     * @requires n >= 0 and p >= 0 and m > 1
+     * @ensures powerMod = n ^ (p) mod m
+     */
+    public static long powerMod(long n, long p, long m) {
+        assert n >= 0 : "Violation of: n >= 0";
+        assert p >= 0 : "Violation of: p >= 0";
+        assert m > 1 : "Violation of: m > 1";
+
+        long base = n % m;
+        long result;
+        if ((m & 1) != 0) {
+            /*
+             * Odd modulus: right-to-left square-and-multiply in Montgomery
+             * form, where 1 is 2^64 mod m
+             */
+            long mInverse = inverse(m);
+            base = toMontgomery(base, m);
+            result = toMontgomery(1, m);
+            for (long e = p; e != 0; e >>>= 1) {
+                if ((e & 1) != 0) {
+                    result = multiplyMontgomery(result, base, m, mInverse);
+                }
+                base = multiplyMontgomery(base, base, m, mInverse);
+            }
+            result = reduce(0, result, m, mInverse);
+        } else {
+            result = 1;
+            for (long e = p; e != 0; e >>>= 1) {
+                if ((e & 1) != 0) {
+                    result = multiplyMod(result, base, m);
+                }
+                base = multiplyMod(base, base, m);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether w is a "witness" that n is composite, in the sense that
+     * either it is a square root of 1 (mod n), or it fails to satisfy the
+     * criterion for primality from Fermat's theorem.
+     *
+     * @param w
+     *            witness candidate
+     * @param n
+     *            number being checked
+     * @return true iff w is a "witness" that n is composite
+     * @requires n > 2 and 1 < w < n - 1
+     * @ensures <pre>
+     * isWitnessToCompositeness =
+     *     (w ^ 2 mod n = 1)  or  (w ^ (n-1) mod n /= 1)
+     * </pre>
+     */
+    public static boolean isWitnessToCompositeness(long w, long n) {
+        assert n > 2 : "Violation of: n > 2";
+        assert 1 < w : "Violation of: 1 < w";
+        assert w < n - 1 : "Violation of: w < n - 1";
+
+        return multiplyMod(w, w, n) == 1 || powerMod(w, n - 1, n) != 1;
+    }
+
+    /**
+     * Reports whether n is a prime; may be wrong with "low" probability.
+     *
+     * @param n
+     *            number to be checked
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1
+     * @ensures <pre>
+     * isPrime1 = [n is a prime number, with small probability of error
+     *         if it is reported to be prime, and no chance of error if it is
+     *         reported to be composite]
+     * </pre>
+     */
+    public static boolean isPrime1(long n) {
+        assert n > 1 : "Violation of: n > 1";
+
+        boolean isPrime;
+        if (n <= THREE) {
+            isPrime = true;
+        } else if ((n & 1) == 0) {
+            isPrime = false;
+        } else {
+            isPrime = !isWitnessToCompositeness(2, n);
+        }
+        return isPrime;
+    }
+
+    /**
+     * Reports whether w is a strong witness that n is composite (the
+     * Miller-Rabin test), given the decomposition n - 1 = d * 2^s.
+     *
+     * @param w
+     *            witness candidate
+     * @param n
+     *            number being checked
+     * @param d
+     *            odd part of n - 1
+     * @param s
+     *            number of factors of 2 in n - 1
+     * @return true iff w is a strong witness that n is composite
+     * @requires n > 2 and n is odd and n - 1 = d * 2^s and d is odd and
+     *           1 < w < n - 1
+     * @ensures <pre>
+     * isStrongWitnessToCompositeness =
+     *     (w ^ d mod n /= 1)  and
+     *     (for all r: integer where (0 <= r < s)
+     *        (w ^ (d * 2^r) mod n /= n - 1))
+     * </pre>
+     */
+    public static boolean isStrongWitnessToCompositeness(long w, long n,
+            long d, int s) {
+        assert n > 2 : "Violation of: n > 2";
+        assert (n & 1) != 0 : "Violation of: n is odd";
+        assert 1 < w : "Violation of: 1 < w";
+        assert w < n - 1 : "Violation of: w < n - 1";
+
+        /*
+         * Work in Montgomery form throughout, where 1 and n - 1 are 2^64 mod n
+         * and n minus that
+         */
+        long nInverse = inverse(n);
+        long one = toMontgomery(1, n);
+        long minusOne = n - one;
+        long base = toMontgomery(w, n);
+        long x = one;
+        for (long e = d; e != 0; e >>>= 1) {
+            if ((e & 1) != 0) {
+                x = multiplyMontgomery(x, base, n, nInverse);
+            }
+            base = multiplyMontgomery(base, base, n, nInverse);
+        }
+        boolean isWitness = x != one && x != minusOne;
+        for (int r = 1; isWitness && r < s && x != one; r++) {
+            x = multiplyMontgomery(x, x, n, nInverse);
+            isWitness = x != minusOne;
+        }
+        return isWitness;
+    }
+
+    /**
+     * Returns the Jacobi symbol (a/n).
+     *
+     * @param a
+     *            the "numerator"
+     * @param n
+     *            the "denominator"
+     * @return (a/n), which is -1, 0 or 1
+     * @requires a >= 0 and n > 0 and n is odd
+     * @ensures jacobi = [the Jacobi symbol (a/n)]
+     */
+    public static int jacobi(long a, long n) {
+        assert a >= 0 : "Violation of: a >= 0";
+        assert n > 0 : "Violation of: n > 0";
+        assert (n & 1) != 0 : "Violation of: n is odd";
+
+        final int four = 4;
+        final int eight = 8;
+        final int five = 5;
+        int result = 1;
+        long top = a % n;
+        long bottom = n;
+        while (top != 0) {
+            /*
+             * (2/n) = -1 exactly when n = 3 or 5 (mod 8)
+             */
+            while ((top & 1) == 0) {
+                top >>= 1;
+                long r = bottom % eight;
+                if (r == THREE || r == five) {
+                    result = -result;
+                }
+            }
+            /*
+             * Quadratic reciprocity: flip the sign when both are 3 (mod 4)
+             */
+            long temp = top;
+            top = bottom;
+            bottom = temp;
+            if (top % four == THREE && bottom % four == THREE) {
+                result = -result;
+            }
+            top %= bottom;
+        }
+        if (bottom != 1) {
+            result = 0;
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether n is a prime. The strong test with a fixed set of
+     * witnesses is deterministic for every n in range, so the answer is exact.
+     *
+     * @param n
+     *            number to be checked
+     * @return true iff n is prime
+     * @requires n > 1
+     * @ensures isPrime2 = [n is a prime number]
+     */
+    public static boolean isPrime2(long n) {
+        assert n > 1 : "Violation of: n > 1";
+
+        boolean isPrime;
+        if (n <= THREE) {
+            isPrime = true;
+        } else if ((n & 1) == 0) {
+            isPrime = false;
+        } else {
+            /*
+             * Decompose n - 1 = d * 2^s once for all the witnesses
+             */
+            int s = Long.numberOfTrailingZeros(n - 1);
+            long d = (n - 1) >>> s;
+            long[] witnesses = WITNESSES;
+            if (n < SMALL_WITNESS_BOUND) {
+                witnesses = SMALL_WITNESSES;
+            }
+            isPrime = true;
+            for (int i = 0; isPrime && i < witnesses.length; i++) {
+                /*
+                 * A witness that is a multiple of n proves nothing, and the
+                 * strong test needs 1 < w < n - 1
+                 */
+                long w = witnesses[i] % n;
+                if (w > 1 && w < n - 1) {
+                    isPrime = !isStrongWitnessToCompositeness(w, n, d, s);
+                }
+            }
+        }
+        return isPrime;
+    }
+
+}
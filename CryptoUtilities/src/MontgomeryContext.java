@@ -0,0 +1,554 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Montgomery arithmetic modulo a fixed modulus m. The context is built once
+ * per modulus; after that, every product modulo m is reduced by a
+ * multiply-and-shift ("REDC") step instead of a long division by m.
+ *
+ * For a {@link NaturalNumber3} modulus of k limbs the radix R is 2^(32k), and
+ * REDC works directly on the limb arrays, one machine word at a time (see
+ * {@code NaturalNumber3.montgomeryReduce}); this only requires m to be odd.
+ * Products of NaturalNumber3s are formed and reduced in a limb buffer owned
+ * by the context, so once its registers have grown to k limbs a Montgomery
+ * multiplication allocates nothing.
+ * For any other implementation, which is only known to be a base-10 number,
+ * R is 10^k, where k is the number of digits of m, so "mod R" and "divided by
+ * R" are just taking off the last k digits. This requires gcd(m, 10) = 1,
+ * i.e., the last digit of m is 1, 3, 7 or 9 (see
+ * {@link #canHandle(NaturalNumber)}).
+ *
+ * A context keeps scratch space of its own, so one context must not be used
+ * by more than one thread at a time.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public final class MontgomeryContext {
+
+    /**
+     * Useful constant, not a magic number: 3.
+     */
+    private static final int THREE = 3;
+
+    /**
+     * Useful constant, not a magic number: 7.
+     */
+    private static final int SEVEN = 7;
+
+    /**
+     * Useful constant, not a magic number: 9.
+     */
+    private static final int NINE = 9;
+
+    /**
+     * Largest window size accepted by powerMod.
+     */
+    public static final int MAX_WINDOW_BITS = 10;
+
+    /**
+     * Exponent bit lengths above which each window size (2, 3, ...) pays
+     * for its table of odd powers; shorter exponents use a window of 1.
+     */
+    private static final int[] WINDOW_THRESHOLDS = { 23, 79, 239, 671, 1791 };
+
+    /**
+     * The modulus m.
+     */
+    private final NaturalNumber modulus;
+
+    /**
+     * Whether R is 2^(32k) (the modulus is a NaturalNumber3) rather than
+     * 10^k.
+     */
+    private final boolean binary;
+
+    /**
+     * Number of digits k of the modulus when R = 10^k; unused otherwise.
+     */
+    private final int digits;
+
+    /**
+     * -m^(-1) mod R when R = 10^k; null otherwise.
+     */
+    private final NaturalNumber mPrime;
+
+    /**
+     * -m^(-1) mod 2^32 when R = 2^(32k); unused otherwise.
+     */
+    private final int limbInverse;
+
+    /**
+     * Scratch space of 2k limbs for products when R = 2^(32k); null
+     * otherwise.
+     */
+    private final int[] limbBuffer;
+
+    /**
+     * R mod m, which is 1 in Montgomery form.
+     */
+    private final NaturalNumber one;
+
+    /**
+     * Scratch space for the low k digits of a number when R = 10^k; null
+     * otherwise.
+     */
+    private final int[] lowDigits;
+
+    /**
+     * R^2 mod m, used to convert into Montgomery form without dividing.
+     */
+    private final NaturalNumber rSquared;
+
+    /**
+     * Scratch register used by REDC and squaring.
+     */
+    private final NaturalNumber scratch;
+
+    /**
+     * Bits of the exponent during powerMod.
+     */
+    private final ExponentBits exponent = new ExponentBits();
+
+    /**
+     * Registers for the odd powers base^1, base^3, base^5, ... used by
+     * sliding-window powerMod; grown to the largest window used so far.
+     */
+    private NaturalNumber[] oddPowers = new NaturalNumber[0];
+
+    /**
+     * Constructor.
+     *
+     * @param m
+     *            the modulus
+     * @requires canHandle(m)
+     * @ensures this is a Montgomery context for modulus m
+     */
+    public MontgomeryContext(NaturalNumber m) {
+        assert canHandle(m) : "Violation of: canHandle(m)";
+
+        this.modulus = CryptoUtilities.copyOf(m);
+        this.scratch = m.newInstance();
+        this.binary = m instanceof NaturalNumber3;
+        if (this.binary) {
+            /*
+             * R = 2^(32k) for a modulus of k limbs; the Montgomery form of 1
+             * is R mod m, and R^2 mod m converts into Montgomery form
+             */
+            NaturalNumber3 m3 = (NaturalNumber3) this.modulus;
+            int k = m3.limbCount();
+            this.digits = 0;
+            this.lowDigits = null;
+            this.mPrime = null;
+            this.limbInverse = NaturalNumber3.montgomeryInverse(m3);
+            this.limbBuffer = new int[2 * k];
+            this.one = NaturalNumber3.radix(k).divide(m3);
+            this.rSquared = NaturalNumber3.radix(2 * k).divide(m3);
+        } else {
+            /*
+             * Count the digits of m to get k, then restore m
+             */
+            NaturalNumber mCopy = CryptoUtilities.copyOf(m);
+            int k = 0;
+            while (!mCopy.isZero()) {
+                mCopy.divideBy10();
+                k++;
+            }
+            this.digits = k;
+            this.lowDigits = new int[k];
+            this.limbInverse = 0;
+            this.limbBuffer = null;
+            /*
+             * R = 10^k
+             */
+            NaturalNumber r = CryptoUtilities.newNaturalNumber(m, 1);
+            for (int i = 0; i < k; i++) {
+                r.multiplyBy10(0);
+            }
+            /*
+             * Find m^(-1) mod R by Newton's iteration x = x * (2 - m * x),
+             * starting from the inverse of the last digit of m mod 10; each
+             * step doubles the number of correct digits. 2 - m * x is computed
+             * as R + 2 - (m * x mod R) so it stays a natural number.
+             */
+            int d = m.divideBy10();
+            m.multiplyBy10(d);
+            int inverse;
+            if (d == 1 || d == NINE) {
+                inverse = d;
+            } else if (d == THREE) {
+                inverse = SEVEN;
+            } else {
+                inverse = THREE;
+            }
+            NaturalNumber x = CryptoUtilities.newNaturalNumber(m, inverse);
+            NaturalNumber rPlus2 = CryptoUtilities.copyOf(r);
+            rPlus2.increment();
+            rPlus2.increment();
+            for (int precision = 1; precision < k; precision *= 2) {
+                NaturalNumber mx = CryptoUtilities.copyOf(m);
+                mx.multiply(x);
+                this.truncate(mx);
+                NaturalNumber factor = CryptoUtilities.copyOf(rPlus2);
+                factor.subtract(mx);
+                x.multiply(factor);
+                this.truncate(x);
+            }
+            /*
+             * m' = R - x, so that m * m' = -1 mod R
+             */
+            this.mPrime = CryptoUtilities.copyOf(r);
+            this.mPrime.subtract(x);
+            /*
+             * Montgomery form of 1 is R mod m
+             */
+            this.one = r.divide(this.modulus);
+            /*
+             * R^2 mod m = (R mod m) * R mod m
+             */
+            NaturalNumber oneTimesR = CryptoUtilities.copyOf(this.one);
+            for (int i = 0; i < k; i++) {
+                oneTimesR.multiplyBy10(0);
+            }
+            this.rSquared = oneTimesR.divide(this.modulus);
+        }
+    }
+
+    /**
+     * Reports whether a Montgomery context can be built for m.
+     *
+     * @param m
+     *            the candidate modulus
+     * @return true iff m > 1 and m is odd (for a NaturalNumber3) or
+     *         gcd(m, 10) = 1 (otherwise)
+     * @ensures <pre>
+     * canHandle = (m > 1  and
+     *              [if m is a NaturalNumber3 then m is odd
+     *               else gcd(m, 10) = 1])
+     * </pre>
+     */
+    public static boolean canHandle(NaturalNumber m) {
+        boolean canHandle = false;
+        if (m.compareTo(CryptoUtilities.newNaturalNumber(m, 1)) > 0) {
+            if (m instanceof NaturalNumber3) {
+                canHandle = ((NaturalNumber3) m).isOdd();
+            } else {
+                int d = m.divideBy10();
+                m.multiplyBy10(d);
+                canHandle = d == 1 || d == THREE || d == SEVEN || d == NINE;
+            }
+        }
+        return canHandle;
+    }
+
+    /**
+     * Reports the modulus of this context.
+     *
+     * @return the modulus
+     * @aliases reference returned by {@code modulus}
+     * @ensures modulus = m
+     */
+    public NaturalNumber modulus() {
+        return this.modulus;
+    }
+
+    /**
+     * Replaces t by t mod R, i.e., keeps only its last k digits; only used
+     * when R = 10^k.
+     *
+     * @param t
+     *            the number to truncate
+     * @updates t
+     * @ensures t = #t mod R
+     */
+    private void truncate(NaturalNumber t) {
+        for (int i = 0; i < this.digits; i++) {
+            this.lowDigits[i] = t.divideBy10();
+        }
+        t.clear();
+        for (int i = this.digits - 1; i >= 0; i--) {
+            t.multiplyBy10(this.lowDigits[i]);
+        }
+    }
+
+    /**
+     * Montgomery reduction (REDC): replaces t by t * R^(-1) mod m.
+     *
+     * @param t
+     *            the number to reduce
+     * @updates t
+     * @requires t < m * R
+     * @ensures t = #t * R^(-1) mod m
+     */
+    private void reduce(NaturalNumber t) {
+        if (this.binary) {
+            this.reduceBinary(t);
+        } else {
+            this.reduceDecimal(t);
+        }
+    }
+
+    /**
+     * REDC with R = 2^(32k), on the limbs of t: replaces t by t * R^(-1) mod
+     * m.
+     *
+     * @param t
+     *            the number to reduce
+     * @updates t
+     * @requires t < m * R
+     * @ensures t = #t * R^(-1) mod m
+     */
+    private void reduceBinary(NaturalNumber t) {
+        NaturalNumber3 m3 = (NaturalNumber3) this.modulus;
+        if (t instanceof NaturalNumber3) {
+            ((NaturalNumber3) t).montgomeryReduce(m3, this.limbInverse);
+        } else {
+            /*
+             * A register of some other implementation goes through a
+             * NaturalNumber3 copy
+             */
+            NaturalNumber3 t3 = new NaturalNumber3(t);
+            t3.montgomeryReduce(m3, this.limbInverse);
+            t.copyFrom(t3);
+        }
+    }
+
+    /**
+     * REDC with R = 10^k: replaces t by t * R^(-1) mod m.
+     *
+     * @param t
+     *            the number to reduce
+     * @updates t
+     * @requires t < m * R
+     * @ensures t = #t * R^(-1) mod m
+     */
+    private void reduceDecimal(NaturalNumber t) {
+        /*
+         * u = (t mod R) * m' mod R, so that t + u * m is divisible by R
+         */
+        NaturalNumber u = this.scratch;
+        u.copyFrom(t);
+        this.truncate(u);
+        u.multiply(this.mPrime);
+        this.truncate(u);
+        u.multiply(this.modulus);
+        t.add(u);
+        /*
+         * Divide by R by dropping the last k digits (all zeros); the result is
+         * less than 2m, so at most one subtraction brings it below m
+         */
+        for (int i = 0; i < this.digits; i++) {
+            t.divideBy10();
+        }
+        if (t.compareTo(this.modulus) >= 0) {
+            t.subtract(this.modulus);
+        }
+    }
+
+    /**
+     * Converts a into Montgomery form.
+     *
+     * @param a
+     *            the number to convert
+     * @updates a
+     * @ensures a = #a * R mod m
+     */
+    public void toMontgomery(NaturalNumber a) {
+        /*
+         * a * R = REDC(a * R^2) for a < m; only a >= m needs a division
+         * first
+         */
+        if (a.compareTo(this.modulus) >= 0) {
+            NaturalNumber remainder = a.divide(this.modulus);
+            a.transferFrom(remainder);
+        }
+        this.multiply(a, this.rSquared);
+    }
+
+    /**
+     * Converts a out of Montgomery form.
+     *
+     * @param a
+     *            the number to convert
+     * @updates a
+     * @requires a < m
+     * @ensures a = #a * R^(-1) mod m
+     */
+    public void fromMontgomery(NaturalNumber a) {
+        this.reduce(a);
+    }
+
+    /**
+     * Multiplies two numbers in Montgomery form.
+     *
+     * @param a
+     *            the first factor (ends as the product)
+     * @param b
+     *            the second factor
+     * @updates a
+     * @requires a < m and b < m and a is not b
+     * @ensures a = #a * b * R^(-1) mod m
+     */
+    public void multiply(NaturalNumber a, NaturalNumber b) {
+        if (this.binary && a instanceof NaturalNumber3
+                && b instanceof NaturalNumber3) {
+            /*
+             * Multiply and reduce in the limb buffer, allocating nothing
+             */
+            ((NaturalNumber3) a).montgomeryMultiply((NaturalNumber3) b,
+                    (NaturalNumber3) this.modulus, this.limbInverse,
+                    this.limbBuffer);
+        } else {
+            a.multiply(b);
+            this.reduce(a);
+        }
+    }
+
+    /**
+     * Squares a number in Montgomery form.
+     *
+     * @param a
+     *            the number to square
+     * @updates a
+     * @requires a < m
+     * @ensures a = #a * #a * R^(-1) mod m
+     */
+    public void square(NaturalNumber a) {
+        if (this.binary && a instanceof NaturalNumber3) {
+            NaturalNumber3 a3 = (NaturalNumber3) a;
+            a3.montgomeryMultiply(a3, (NaturalNumber3) this.modulus,
+                    this.limbInverse, this.limbBuffer);
+        } else {
+            this.scratch.copyFrom(a);
+            a.multiply(this.scratch);
+            this.reduce(a);
+        }
+    }
+
+    /**
+     * Reports the window size powerMod picks for an exponent with the given
+     * number of bits.
+     *
+     * @param exponentBits
+     *            number of bits of the exponent
+     * @return the window size
+     * @ensures 1 <= windowBits <= MAX_WINDOW_BITS
+     */
+    public static int windowBits(int exponentBits) {
+        int k = 1;
+        for (int threshold : WINDOW_THRESHOLDS) {
+            if (exponentBits > threshold) {
+                k++;
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Updates n to its p-th power modulo m, with the window size picked by
+     * {@link #windowBits(int)}. Apart from reducing an n that is not less
+     * than m, and the first use of a window size, this allocates no
+     * NaturalNumbers: the registers of the context are reused for every call.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @updates n
+     * @requires n is not p
+     * @ensures n = #n ^ (p) mod m
+     */
+    public void powerMod(NaturalNumber n, NaturalNumber p) {
+        this.powerMod(n, p, 0);
+    }
+
+    /**
+     * Updates n to its p-th power modulo m by left-to-right sliding-window
+     * exponentiation with windows of up to k bits: the odd powers base^1,
+     * base^3, ..., base^(2^k - 1) are computed first, then each run of up to
+     * k exponent bits that starts and ends with a 1 costs one multiply, so
+     * there are about bits / (k + 1) multiplies besides the squarings instead
+     * of one per set bit. A window of 1 is plain square-and-multiply.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @param k
+     *            the window size, or 0 to pick it from the length of p
+     * @updates n
+     * @requires n is not p and 0 <= k <= MAX_WINDOW_BITS
+     * @ensures n = #n ^ (p) mod m
+     */
+    public void powerMod(NaturalNumber n, NaturalNumber p, int k) {
+        assert 0 <= k : "Violation of: 0 <= k";
+        assert k <= MAX_WINDOW_BITS : "Violation of: k <= MAX_WINDOW_BITS";
+
+        int bits = this.exponent.load(p);
+        int window = k;
+        if (window == 0) {
+            window = windowBits(bits);
+        }
+        /*
+         * Table of odd powers, in Montgomery form: oddPowers[j] = base^(2j+1),
+         * built by repeated multiplication by base^2 (held in n meanwhile)
+         */
+        int tableSize = 1 << (window - 1);
+        this.growOddPowers(tableSize);
+        this.oddPowers[0].copyFrom(n);
+        this.toMontgomery(this.oddPowers[0]);
+        if (tableSize > 1) {
+            n.copyFrom(this.oddPowers[0]);
+            this.square(n);
+            for (int j = 1; j < tableSize; j++) {
+                this.oddPowers[j].copyFrom(this.oddPowers[j - 1]);
+                this.multiply(this.oddPowers[j], n);
+            }
+        }
+        /*
+         * Scan p from the top bit down: a 0 bit is a squaring; a 1 bit starts
+         * a window reaching down at most k bits to the lowest 1 bit in reach,
+         * which is squared into place and multiplied by its odd power
+         */
+        n.copyFrom(this.one);
+        int i = bits - 1;
+        while (i >= 0) {
+            if (!this.exponent.testBit(i)) {
+                this.square(n);
+                i--;
+            } else {
+                int low = Math.max(i - window + 1, 0);
+                while (!this.exponent.testBit(low)) {
+                    low++;
+                }
+                for (int j = low; j <= i; j++) {
+                    this.square(n);
+                }
+                int value = this.exponent.bits(low, i - low + 1);
+                this.multiply(n, this.oddPowers[value / 2]);
+                i = low - 1;
+            }
+        }
+        this.fromMontgomery(n);
+    }
+
+    /**
+     * Makes sure there are at least size odd-power registers.
+     *
+     * @param size
+     *            the number of registers needed
+     * @updates this.oddPowers
+     * @ensures |this.oddPowers| >= size
+     */
+    private void growOddPowers(int size) {
+        if (this.oddPowers.length < size) {
+            NaturalNumber[] grown = new NaturalNumber[size];
+            System.arraycopy(this.oddPowers, 0, grown, 0,
+                    this.oddPowers.length);
+            for (int j = this.oddPowers.length; j < size; j++) {
+                grown[j] = this.modulus.newInstance();
+            }
+            this.oddPowers = grown;
+        }
+    }
+
+}
@@ -0,0 +1,1149 @@
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumberSecondary;
+
+/**
+ * {@code NaturalNumber} represented as an array of base-2^32 "limbs", so that
+ * the secondary arithmetic the crypto utilities depend on (add, subtract,
+ * multiply, divide, compareTo) works on machine words instead of one decimal
+ * digit at a time.
+ *
+ * @convention <pre>
+ * 0 <= this.length <= |this.limbs|  and
+ * [this.length = 0  or  this.limbs[this.length - 1] /= 0]
+ * </pre>
+ * @correspondence <pre>
+ * this = [sum of unsigned(this.limbs[i]) * 2^(32 * i)
+ *         for 0 <= i < this.length]
+ * </pre>
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public class NaturalNumber3 extends NaturalNumberSecondary {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Mask for the low 32 bits of a long, i.e., an unsigned limb.
+     */
+    private static final long MASK = 0xFFFFFFFFL;
+
+    /**
+     * Number of bits in a limb.
+     */
+    private static final int LIMB_BITS = 32;
+
+    /**
+     * Useful constant, not a magic number: 10.
+     */
+    private static final int TEN = 10;
+
+    /**
+     * Number of leading bits Lehmer's algorithm simulates Euclid on; small
+     * enough that each cofactor times a limb, plus another, fits in a long.
+     */
+    private static final int LEHMER_BITS = 30;
+
+    /**
+     * Largest power of 10 that fits in a limb, used to convert to and from
+     * decimal nine digits at a time.
+     */
+    private static final int BILLION = 1000000000;
+
+    /**
+     * Number of decimal digits in BILLION - 1.
+     */
+    private static final int BILLION_DIGITS = 9;
+
+    /**
+     * Limbs of this, least significant first.
+     */
+    private int[] limbs;
+
+    /**
+     * Number of limbs in use.
+     */
+    private int length;
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+        this.limbs = new int[2];
+        this.length = 0;
+    }
+
+    /**
+     * Makes sure there is room for at least {@code capacity} limbs, keeping
+     * the limbs in use.
+     *
+     * @param capacity
+     *            the number of limbs needed
+     * @updates this.limbs
+     * @ensures |this.limbs| >= capacity
+     */
+    private void ensureCapacity(int capacity) {
+        if (this.limbs.length < capacity) {
+            int[] bigger = new int[Math.max(capacity, 2 * this.limbs.length)];
+            System.arraycopy(this.limbs, 0, bigger, 0, this.length);
+            this.limbs = bigger;
+        }
+    }
+
+    /**
+     * Drops leading zero limbs so the convention holds again.
+     *
+     * @updates this.length
+     * @ensures [this.length is the least length that keeps the value]
+     */
+    private void normalize() {
+        while (this.length > 0 && this.limbs[this.length - 1] == 0) {
+            this.length--;
+        }
+    }
+
+    /**
+     * Sets this to the number in {@code a[0, len)}.
+     *
+     * @param a
+     *            limbs, least significant first
+     * @param len
+     *            number of limbs of a to use
+     * @replaces this
+     * @ensures this = [the value of a[0, len)]
+     */
+    private void setLimbs(int[] a, int len) {
+        this.ensureCapacity(len);
+        System.arraycopy(a, 0, this.limbs, 0, len);
+        this.length = len;
+        this.normalize();
+    }
+
+    /**
+     * Returns n as a {@code NaturalNumber3}, converting it only if its dynamic
+     * type is some other implementation.
+     *
+     * @param n
+     *            the number
+     * @return n, or a {@code NaturalNumber3} copy of it
+     * @ensures asNaturalNumber3 = n
+     */
+    private static NaturalNumber3 asNaturalNumber3(NaturalNumber n) {
+        NaturalNumber3 result;
+        if (n instanceof NaturalNumber3) {
+            result = (NaturalNumber3) n;
+        } else {
+            result = new NaturalNumber3(n);
+        }
+        return result;
+    }
+
+    /**
+     * Replaces this by this * factor + addend.
+     *
+     * @param factor
+     *            the small factor
+     * @param addend
+     *            the small addend
+     * @updates this
+     * @requires 0 <= factor and 0 <= addend
+     * @ensures this = #this * factor + addend
+     */
+    private void multiplyAddSmall(int factor, int addend) {
+        long carry = addend;
+        for (int i = 0; i < this.length; i++) {
+            long t = (this.limbs[i] & MASK) * factor + carry;
+            this.limbs[i] = (int) t;
+            carry = t >>> LIMB_BITS;
+        }
+        if (carry != 0) {
+            this.ensureCapacity(this.length + 1);
+            this.limbs[this.length] = (int) carry;
+            this.length++;
+        }
+    }
+
+    /**
+     * Replaces this by this / divisor and returns the remainder.
+     *
+     * @param divisor
+     *            the small divisor
+     * @return #this mod divisor
+     * @updates this
+     * @requires divisor > 0
+     * @ensures <pre>
+     * #this = this * divisor + divideSmall  and
+     * 0 <= divideSmall < divisor
+     * </pre>
+     */
+    private long divideSmall(long divisor) {
+        long remainder = 0;
+        for (int i = this.length - 1; i >= 0; i--) {
+            long t = (remainder << LIMB_BITS) | (this.limbs[i] & MASK);
+            this.limbs[i] = (int) Long.divideUnsigned(t, divisor);
+            remainder = Long.remainderUnsigned(t, divisor);
+        }
+        this.normalize();
+        return remainder;
+    }
+
+    /**
+     * Compares the magnitudes in {@code a[0, aLen)} and {@code b[0, bLen)},
+     * both without leading zero limbs.
+     *
+     * @param a
+     *            the first number's limbs
+     * @param aLen
+     *            limbs in use in a
+     * @param b
+     *            the second number's limbs
+     * @param bLen
+     *            limbs in use in b
+     * @return negative, zero or positive as a is less than, equal to or
+     *         greater than b
+     */
+    private static int compareLimbs(int[] a, int aLen, int[] b, int bLen) {
+        int result = Integer.compare(aLen, bLen);
+        for (int i = aLen - 1; result == 0 && i >= 0; i--) {
+            result = Integer.compareUnsigned(a[i], b[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Divides this by a divisor with at least two limbs (Knuth's Algorithm D),
+     * returning the remainder.
+     *
+     * @param v
+     *            the divisor's limbs
+     * @param vLen
+     *            limbs in use in v
+     * @return #this mod [value of v]
+     * @updates this
+     * @requires vLen >= 2 and v[vLen - 1] /= 0 and this >= [value of v]
+     * @ensures #this = this * [value of v] + divideLimbs
+     */
+    private NaturalNumber3 divideLimbs(int[] v, int vLen) {
+        final long base = 1L << LIMB_BITS;
+        int uLen = this.length;
+        /*
+         * Normalize so the top limb of the divisor has its high bit set, which
+         * keeps every trial quotient digit within 2 of the true one
+         */
+        int shift = Integer.numberOfLeadingZeros(v[vLen - 1]);
+        int[] vn = new int[vLen];
+        int[] un = new int[uLen + 1];
+        shiftLeft(v, vLen, shift, vn);
+        un[uLen] = shiftLeft(this.limbs, uLen, shift, un);
+        int[] q = new int[uLen - vLen + 1];
+        long vTop = vn[vLen - 1] & MASK;
+        long vNext = vn[vLen - 2] & MASK;
+        for (int j = uLen - vLen; j >= 0; j--) {
+            /*
+             * Estimate the quotient digit from the top two limbs of the
+             * current remainder and the top limb of the divisor, then correct
+             * it with the second limb of the divisor
+             */
+            long num = ((un[j + vLen] & MASK) << LIMB_BITS)
+                    | (un[j + vLen - 1] & MASK);
+            long qHat = Long.divideUnsigned(num, vTop);
+            long rHat = Long.remainderUnsigned(num, vTop);
+            while (qHat >= base || Long.compareUnsigned(qHat * vNext,
+                    (rHat << LIMB_BITS) | (un[j + vLen - 2] & MASK)) > 0) {
+                qHat--;
+                rHat += vTop;
+                if (rHat >= base) {
+                    break;
+                }
+            }
+            /*
+             * Multiply and subtract qHat * v from the current remainder
+             */
+            long borrow = 0;
+            long t;
+            for (int i = 0; i < vLen; i++) {
+                long p = qHat * (vn[i] & MASK);
+                t = (un[i + j] & MASK) - borrow - (p & MASK);
+                un[i + j] = (int) t;
+                borrow = (p >>> LIMB_BITS) - (t >> LIMB_BITS);
+            }
+            t = (un[j + vLen] & MASK) - borrow;
+            un[j + vLen] = (int) t;
+            if (t < 0) {
+                /*
+                 * qHat was one too large: add the divisor back
+                 */
+                qHat--;
+                long carry = 0;
+                for (int i = 0; i < vLen; i++) {
+                    t = (un[i + j] & MASK) + (vn[i] & MASK) + carry;
+                    un[i + j] = (int) t;
+                    carry = t >>> LIMB_BITS;
+                }
+                un[j + vLen] += (int) carry;
+            }
+            q[j] = (int) qHat;
+        }
+        /*
+         * Undo the normalization to get the remainder
+         */
+        int[] r = new int[vLen];
+        for (int i = 0; i < vLen; i++) {
+            if (shift == 0) {
+                r[i] = un[i];
+            } else {
+                r[i] = (un[i] >>> shift) | (un[i + 1] << (LIMB_BITS - shift));
+            }
+        }
+        NaturalNumber3 remainder = new NaturalNumber3();
+        remainder.setLimbs(r, vLen);
+        this.setLimbs(q, q.length);
+        return remainder;
+    }
+
+    /**
+     * Shifts {@code a[0, len)} left by {@code shift} bits into
+     * {@code out[0, len)} and returns the bits shifted out of the top.
+     *
+     * @param a
+     *            the limbs to shift
+     * @param len
+     *            number of limbs to shift
+     * @param shift
+     *            the shift amount
+     * @param out
+     *            where the shifted limbs go
+     * @return the top {@code shift} bits of a[len - 1]
+     * @requires 0 <= shift < 32 and |out| >= len
+     */
+    private static int shiftLeft(int[] a, int len, int shift, int[] out) {
+        int carry = 0;
+        for (int i = 0; i < len; i++) {
+            int limb = a[i];
+            out[i] = (limb << shift) | carry;
+            if (shift == 0) {
+                carry = 0;
+            } else {
+                carry = limb >>> (LIMB_BITS - shift);
+            }
+        }
+        return carry;
+    }
+
+    /**
+     * Exchanges the representations of this and other.
+     *
+     * @param other
+     *            the number to swap with
+     * @updates this, other
+     * @ensures this = #other and other = #this
+     */
+    private void swapWith(NaturalNumber3 other) {
+        int[] tempLimbs = this.limbs;
+        int tempLength = this.length;
+        this.limbs = other.limbs;
+        this.length = other.length;
+        other.limbs = tempLimbs;
+        other.length = tempLength;
+    }
+
+    /**
+     * Reports the number of trailing zero bits of this.
+     *
+     * @return the number of trailing zero bits
+     * @requires this > 0
+     * @ensures [2^trailingZeros divides this, 2^(trailingZeros + 1) does not]
+     */
+    private int trailingZeros() {
+        int i = 0;
+        while (this.limbs[i] == 0) {
+            i++;
+        }
+        return i * LIMB_BITS + Integer.numberOfTrailingZeros(this.limbs[i]);
+    }
+
+    /**
+     * Replaces this by this / 2^shift.
+     *
+     * @param shift
+     *            the number of bits to shift out
+     * @updates this
+     * @requires shift >= 0
+     * @ensures this = #this / 2^shift
+     */
+    private void shiftRight(int shift) {
+        int words = Math.min(shift / LIMB_BITS, this.length);
+        int bits = shift % LIMB_BITS;
+        int newLength = this.length - words;
+        for (int i = 0; i < newLength; i++) {
+            int limb = this.limbs[i + words] >>> bits;
+            if (bits != 0 && i + words + 1 < this.length) {
+                limb |= this.limbs[i + words + 1] << (LIMB_BITS - bits);
+            }
+            this.limbs[i] = limb;
+        }
+        this.length = newLength;
+        this.normalize();
+    }
+
+    /**
+     * Replaces this by this * 2^shift.
+     *
+     * @param shift
+     *            the number of bits to shift in
+     * @updates this
+     * @requires shift >= 0
+     * @ensures this = #this * 2^shift
+     */
+    private void shiftLeftBits(int shift) {
+        if (this.length > 0) {
+            int words = shift / LIMB_BITS;
+            int bits = shift % LIMB_BITS;
+            this.ensureCapacity(this.length + words + 1);
+            this.limbs[this.length + words] = 0;
+            for (int i = this.length - 1; i >= 0; i--) {
+                int limb = this.limbs[i];
+                if (bits != 0) {
+                    this.limbs[i + words + 1] |= limb >>> (LIMB_BITS - bits);
+                }
+                this.limbs[i + words] = limb << bits;
+            }
+            for (int i = 0; i < words; i++) {
+                this.limbs[i] = 0;
+            }
+            this.length += words + 1;
+            this.normalize();
+        }
+    }
+
+    /**
+     * Returns the 30 bits of this starting at bit position h, i.e.,
+     * floor(this / 2^h) mod 2^30.
+     *
+     * @param h
+     *            the lowest bit position
+     * @return the 30 bits
+     * @requires h >= 0
+     * @ensures bitsAt = floor(this / 2^h) mod 2^30
+     */
+    private long bitsAt(int h) {
+        final long mask30 = (1L << LEHMER_BITS) - 1;
+        int word = h / LIMB_BITS;
+        long window = 0;
+        if (word + 1 < this.length) {
+            window = (this.limbs[word + 1] & MASK) << LIMB_BITS;
+        }
+        if (word < this.length) {
+            window |= this.limbs[word] & MASK;
+        }
+        return (window >>> (h % LIMB_BITS)) & mask30;
+    }
+
+    /**
+     * Reports the number of bits of this.
+     *
+     * @return the bit length of this
+     * @ensures 2^(bitLength - 1) <= this < 2^bitLength (or both 0)
+     */
+    private int bitLength() {
+        int result = 0;
+        if (this.length > 0) {
+            result = this.length * LIMB_BITS
+                    - Integer.numberOfLeadingZeros(this.limbs[this.length - 1]);
+        }
+        return result;
+    }
+
+    /**
+     * Replaces this by gcd(this, other), using the binary (Stein) algorithm:
+     * only shifts, comparisons and subtractions, no division.
+     *
+     * @param other
+     *            the other number
+     * @updates this
+     * @clears other
+     * @ensures this = [greatest common divisor of #this and #other]
+     */
+    final void binaryGcd(NaturalNumber3 other) {
+        if (this.isZero()) {
+            this.swapWith(other);
+        } else if (!other.isZero()) {
+            /*
+             * gcd(2^i a, 2^j b) = 2^min(i, j) gcd(a, b) for odd a and b, and
+             * for odd a > b, gcd(a, b) = gcd((a - b) / 2^k, b), where 2^k is
+             * the largest power of 2 dividing the even number a - b
+             */
+            int thisZeros = this.trailingZeros();
+            int otherZeros = other.trailingZeros();
+            this.shiftRight(thisZeros);
+            other.shiftRight(otherZeros);
+            int comparison = compareLimbs(this.limbs, this.length, other.limbs,
+                    other.length);
+            while (comparison != 0) {
+                if (comparison < 0) {
+                    this.swapWith(other);
+                }
+                this.subtract(other);
+                this.shiftRight(this.trailingZeros());
+                comparison = compareLimbs(this.limbs, this.length,
+                        other.limbs, other.length);
+            }
+            this.shiftLeftBits(Math.min(thisZeros, otherZeros));
+        }
+        other.clear();
+    }
+
+    /**
+     * Replaces this by gcd(this, other), using Lehmer's algorithm: the
+     * quotients of Euclid's algorithm are found from the leading 30 bits of
+     * both numbers in long arithmetic, and applied to the full numbers in one
+     * pass as a 2 x 2 matrix of cofactors, so most steps need no division.
+     *
+     * @param other
+     *            the other number
+     * @updates this
+     * @clears other
+     * @ensures this = [greatest common divisor of #this and #other]
+     */
+    final void lehmerGcd(NaturalNumber3 other) {
+        if (compareLimbs(this.limbs, this.length, other.limbs,
+                other.length) < 0) {
+            this.swapWith(other);
+        }
+        while (other.length > 1) {
+            /*
+             * Simulate Euclid on the leading bits x and y of this and other
+             * (Knuth's Algorithm L), as long as the quotient is certain
+             */
+            int h = this.bitLength() - LEHMER_BITS;
+            long x = this.bitsAt(h);
+            long y = other.bitsAt(h);
+            long a = 1;
+            long b = 0;
+            long c = 0;
+            long d = 1;
+            boolean certain = true;
+            while (certain && y + c != 0 && y + d != 0) {
+                long q = (x + a) / (y + c);
+                certain = q == (x + b) / (y + d);
+                if (certain) {
+                    long t = a - q * c;
+                    a = c;
+                    c = t;
+                    t = b - q * d;
+                    b = d;
+                    d = t;
+                    t = x - q * y;
+                    x = y;
+                    y = t;
+                }
+            }
+            if (b == 0) {
+                /*
+                 * No quotient was certain: take one full Euclid step
+                 */
+                NaturalNumber remainder = this.divide(other);
+                this.transferFrom(other);
+                other.transferFrom(remainder);
+            } else {
+                this.combineWith(other, a, b, c, d);
+            }
+        }
+        if (!other.isZero()) {
+            /*
+             * other fits in one limb: finish in long arithmetic
+             */
+            long u = other.limbs[0] & MASK;
+            long v = this.divideSmall(u);
+            while (v != 0) {
+                long t = u % v;
+                u = v;
+                v = t;
+            }
+            this.limbs[0] = (int) u;
+            this.length = 1;
+        }
+        other.clear();
+    }
+
+    /**
+     * Replaces this and other by a * this + b * other and c * this + d *
+     * other, in one pass over the limbs.
+     *
+     * @param other
+     *            the other number
+     * @param a
+     *            cofactor of this in the new this
+     * @param b
+     *            cofactor of other in the new this
+     * @param c
+     *            cofactor of this in the new other
+     * @param d
+     *            cofactor of other in the new other
+     * @updates this, other
+     * @requires <pre>
+     * this >= other  and  |a|, |b|, |c|, |d| <= 2^30  and
+     * a, b have opposite signs (or one is 0), and so do c, d  and
+     * a * this + b * other >= 0  and  c * this + d * other >= 0
+     * </pre>
+     * @ensures this = a * #this + b * #other and other = c * #this + d * #other
+     */
+    private void combineWith(NaturalNumber3 other, long a, long b, long c,
+            long d) {
+        other.ensureCapacity(this.length);
+        long thisCarry = 0;
+        long otherCarry = 0;
+        for (int i = 0; i < this.length; i++) {
+            long u = this.limbs[i] & MASK;
+            long v = 0;
+            if (i < other.length) {
+                v = other.limbs[i] & MASK;
+            }
+            long t = a * u + b * v + thisCarry;
+            this.limbs[i] = (int) t;
+            thisCarry = t >> LIMB_BITS;
+            t = c * u + d * v + otherCarry;
+            other.limbs[i] = (int) t;
+            otherCarry = t >> LIMB_BITS;
+        }
+        other.length = this.length;
+        this.normalize();
+        other.normalize();
+    }
+
+    /**
+     * Reports the number of limbs of this.
+     *
+     * @return the number of limbs in use
+     * @ensures limbCount = [least k such that this < 2^(32 * k)]
+     */
+    final int limbCount() {
+        return this.length;
+    }
+
+    /**
+     * Reports limb i of this, as an unsigned 32-bit value.
+     *
+     * @param i
+     *            the limb position, 0 being the least significant
+     * @return floor(this / 2^(32 * i)) mod 2^32
+     * @requires 0 <= i < limbCount()
+     * @ensures limb = floor(this / 2^(32 * i)) mod 2^32
+     */
+    final long limb(int i) {
+        assert 0 <= i : "Violation of: 0 <= i";
+        assert i < this.length : "Violation of: i < limbCount()";
+
+        return this.limbs[i] & MASK;
+    }
+
+    /**
+     * Reports whether this is odd.
+     *
+     * @return true iff this is odd
+     * @ensures isOdd = (this mod 2 = 1)
+     */
+    final boolean isOdd() {
+        return this.length > 0 && (this.limbs[0] & 1) != 0;
+    }
+
+    /**
+     * Returns 2^(32 * k), the Montgomery radix for a modulus of k limbs.
+     *
+     * @param k
+     *            the number of limbs
+     * @return 2^(32 * k)
+     * @requires k >= 0
+     * @ensures radix = 2^(32 * k)
+     */
+    static NaturalNumber3 radix(int k) {
+        assert k >= 0 : "Violation of: k >= 0";
+
+        NaturalNumber3 result = new NaturalNumber3();
+        result.ensureCapacity(k + 1);
+        result.limbs[k] = 1;
+        result.length = k + 1;
+        return result;
+    }
+
+    /**
+     * Returns -m^(-1) mod 2^32, the factor word-level Montgomery reduction
+     * multiplies each low limb by.
+     *
+     * @param m
+     *            the modulus
+     * @return -m^(-1) mod 2^32, as an int
+     * @requires m is odd
+     * @ensures m * montgomeryInverse = -1 mod 2^32
+     */
+    static int montgomeryInverse(NaturalNumber3 m) {
+        assert m.isOdd() : "Violation of: m is odd";
+
+        /*
+         * m * m = 1 mod 8 for odd m, and each Newton step x = x * (2 - m * x)
+         * doubles the number of correct bits (3, 6, 12, 24, 48)
+         */
+        final int newtonSteps = 4;
+        int m0 = m.limbs[0];
+        int x = m0;
+        for (int i = 0; i < newtonSteps; i++) {
+            x *= 2 - m0 * x;
+        }
+        return -x;
+    }
+
+    /**
+     * REDC on a limb array: adds to {@code t[0, 2k)} the multiple of m that
+     * clears its k low limbs. Each of the k steps clears the lowest remaining
+     * limb by adding a one-limb multiple of m, k^2 word multiplies in all.
+     *
+     * @param t
+     *            the limbs of the number to reduce; only the first 2k are
+     *            used
+     * @param mLimbs
+     *            the limbs of the modulus
+     * @param k
+     *            the number of limbs of the modulus
+     * @param mInverse
+     *            -m^(-1) mod 2^32
+     * @return the carry out of limb 2k - 1 (0 or 1)
+     * @updates t
+     * @requires |t| >= 2k and [value of t[0, 2k)] < m * 2^(32k)
+     * @ensures <pre>
+     * [value of t[k, 2k)] + redc * 2^(32k) =
+     *     [value of #t[0, 2k)] * 2^(-32k) mod m, or that plus m
+     * </pre>
+     */
+    private static long redc(int[] t, int[] mLimbs, int k, int mInverse) {
+        long top = 0;
+        for (int i = 0; i < k; i++) {
+            long u = (t[i] * mInverse) & MASK;
+            long carry = 0;
+            for (int j = 0; j < k; j++) {
+                long w = u * (mLimbs[j] & MASK) + (t[i + j] & MASK) + carry;
+                t[i + j] = (int) w;
+                carry = w >>> LIMB_BITS;
+            }
+            for (int j = i + k; carry != 0 && j < 2 * k; j++) {
+                long w = (t[j] & MASK) + carry;
+                t[j] = (int) w;
+                carry = w >>> LIMB_BITS;
+            }
+            top += carry;
+        }
+        return top;
+    }
+
+    /**
+     * Sets this to the result of redc: the value of {@code t[k, 2k)} plus
+     * top * 2^(32k), less m if that is at least m.
+     *
+     * @param t
+     *            the limbs left by redc
+     * @param top
+     *            the carry returned by redc
+     * @param m
+     *            the modulus, of k limbs
+     * @replaces this
+     * @requires [value of t[k, 2k)] + top * 2^(32k) < 2m
+     * @ensures this = ([value of t[k, 2k)] + top * 2^(32k)) mod m
+     */
+    private void takeReduced(int[] t, long top, NaturalNumber3 m) {
+        int k = m.length;
+        int[] mLimbs = m.limbs;
+        this.ensureCapacity(k);
+        System.arraycopy(t, k, this.limbs, 0, k);
+        this.length = k;
+        this.normalize();
+        if (top != 0
+                || compareLimbs(this.limbs, this.length, mLimbs, k) >= 0) {
+            long borrow = 0;
+            for (int i = 0; i < k; i++) {
+                long w = (this.limbs[i] & MASK) - (mLimbs[i] & MASK) - borrow;
+                this.limbs[i] = (int) w;
+                borrow = w >>> (2 * LIMB_BITS - 1);
+            }
+            this.length = k;
+            this.normalize();
+        }
+    }
+
+    /**
+     * Montgomery reduction (REDC) with radix R = 2^(32 * k), where k is the
+     * number of limbs of m: replaces this by this * R^(-1) mod m. Once this
+     * has room for 2k limbs, it allocates nothing.
+     *
+     * @param m
+     *            the modulus
+     * @param mInverse
+     *            -m^(-1) mod 2^32, as returned by montgomeryInverse(m)
+     * @updates this
+     * @requires m is odd and this < m * R
+     * @ensures this = #this * R^(-1) mod m
+     */
+    final void montgomeryReduce(NaturalNumber3 m, int mInverse) {
+        int k = m.length;
+        this.ensureCapacity(2 * k);
+        for (int i = this.length; i < 2 * k; i++) {
+            this.limbs[i] = 0;
+        }
+        long top = redc(this.limbs, m.limbs, k, mInverse);
+        this.takeReduced(this.limbs, top, m);
+    }
+
+    /**
+     * Montgomery multiplication with radix R = 2^(32 * k), where k is the
+     * number of limbs of m: replaces this by this * b * R^(-1) mod m. The
+     * product and its reduction are formed in the caller's buffer, so once
+     * this has room for k limbs, it allocates nothing.
+     *
+     * @param b
+     *            the other factor (may be this)
+     * @param m
+     *            the modulus
+     * @param mInverse
+     *            -m^(-1) mod 2^32, as returned by montgomeryInverse(m)
+     * @param buffer
+     *            scratch space of at least 2k limbs
+     * @updates this, buffer
+     * @requires m is odd and this < m and b < m and |buffer| >= 2k
+     * @ensures this = #this * b * R^(-1) mod m
+     */
+    final void montgomeryMultiply(NaturalNumber3 b, NaturalNumber3 m,
+            int mInverse, int[] buffer) {
+        int k = m.length;
+        int aLen = this.length;
+        int bLen = b.length;
+        int[] bLimbs = b.limbs;
+        for (int i = 0; i < 2 * k; i++) {
+            buffer[i] = 0;
+        }
+        /*
+         * Schoolbook product into the buffer, as in multiply
+         */
+        for (int i = 0; i < aLen; i++) {
+            long a = this.limbs[i] & MASK;
+            long carry = 0;
+            for (int j = 0; j < bLen; j++) {
+                long w = a * (bLimbs[j] & MASK) + (buffer[i + j] & MASK)
+                        + carry;
+                buffer[i + j] = (int) w;
+                carry = w >>> LIMB_BITS;
+            }
+            buffer[i + bLen] = (int) carry;
+        }
+        long top = redc(buffer, m.limbs, k, mInverse);
+        this.takeReduced(buffer, top, m);
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public NaturalNumber3() {
+        this.createNewRep();
+    }
+
+    /**
+     * Constructor from {@code int}.
+     *
+     * @param i
+     *            {@code int} to initialize from
+     */
+    public NaturalNumber3(int i) {
+        assert i >= 0 : "Violation of: i >= 0";
+        this.createNewRep();
+        this.setFromInt(i);
+    }
+
+    /**
+     * Constructor from {@code String}.
+     *
+     * @param s
+     *            {@code String} to initialize from
+     */
+    public NaturalNumber3(String s) {
+        assert s != null : "Violation of: s is not null";
+        assert s.matches("0|[1-9]\\d*") : ""
+                + "Violation of: there exists n: NATURAL (s = TO_STRING(n))";
+        this.createNewRep();
+        this.setFromString(s);
+    }
+
+    /**
+     * Constructor from {@code NaturalNumber}.
+     *
+     * @param n
+     *            {@code NaturalNumber} to initialize from
+     */
+    public NaturalNumber3(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        this.createNewRep();
+        this.copyFrom(n);
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public final NaturalNumber newInstance() {
+        return new NaturalNumber3();
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(NaturalNumber source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof NaturalNumber3 : ""
+                + "Violation of: source is of dynamic type NaturalNumber3";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case
+         */
+        NaturalNumber3 localSource = (NaturalNumber3) source;
+        this.limbs = localSource.limbs;
+        this.length = localSource.length;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void multiplyBy10(int k) {
+        assert 0 <= k : "Violation of: 0 <= k";
+        assert k < RADIX : "Violation of: k < 10";
+        this.multiplyAddSmall(TEN, k);
+    }
+
+    @Override
+    public final int divideBy10() {
+        return (int) this.divideSmall(TEN);
+    }
+
+    @Override
+    public final boolean isZero() {
+        return this.length == 0;
+    }
+
+    /*
+     * Other methods (overridden for performance reasons) ---------------------
+     */
+
+    @Override
+    public final void setFromInt(int i) {
+        assert i >= 0 : "Violation of: i >= 0";
+        this.ensureCapacity(1);
+        this.limbs[0] = i;
+        this.length = 1;
+        this.normalize();
+    }
+
+    @Override
+    public final boolean canConvertToInt() {
+        return this.length == 0 || (this.length == 1 && this.limbs[0] >= 0);
+    }
+
+    @Override
+    public final int toInt() {
+        assert this.canConvertToInt() : ""
+                + "Violation of: this <= Integer.MAX_VALUE";
+        int result = 0;
+        if (this.length == 1) {
+            result = this.limbs[0];
+        }
+        return result;
+    }
+
+    @Override
+    public final void setFromString(String s) {
+        assert s != null : "Violation of: s is not null";
+        this.length = 0;
+        /*
+         * Take the digits nine at a time: this = this * 10^9 + chunk
+         */
+        int start = 0;
+        int end = s.length() % BILLION_DIGITS;
+        if (end == 0) {
+            end = BILLION_DIGITS;
+        }
+        while (start < s.length()) {
+            int factor = 1;
+            for (int i = start; i < end; i++) {
+                factor *= TEN;
+            }
+            this.multiplyAddSmall(factor,
+                    Integer.parseInt(s.substring(start, end)));
+            start = end;
+            end += BILLION_DIGITS;
+        }
+        this.normalize();
+    }
+
+    @Override
+    public final void copyFrom(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        if (n instanceof NaturalNumber3) {
+            NaturalNumber3 localN = (NaturalNumber3) n;
+            this.setLimbs(localN.limbs, localN.length);
+        } else {
+            this.setFromString(n.toString());
+        }
+    }
+
+    @Override
+    public final int compareTo(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        NaturalNumber3 localN = asNaturalNumber3(n);
+        return compareLimbs(this.limbs, this.length, localN.limbs,
+                localN.length);
+    }
+
+    @Override
+    public final void increment() {
+        this.multiplyAddSmall(1, 1);
+    }
+
+    @Override
+    public final void decrement() {
+        assert !this.isZero() : "Violation of: this > 0";
+        int i = 0;
+        while (this.limbs[i] == 0) {
+            this.limbs[i] = -1;
+            i++;
+        }
+        this.limbs[i]--;
+        this.normalize();
+    }
+
+    @Override
+    public final void add(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        NaturalNumber3 localN = asNaturalNumber3(n);
+        int nLen = localN.length;
+        int[] nLimbs = localN.limbs;
+        int resultLen = Math.max(this.length, nLen);
+        this.ensureCapacity(resultLen + 1);
+        long carry = 0;
+        for (int i = 0; i < resultLen; i++) {
+            long t = carry;
+            if (i < this.length) {
+                t += this.limbs[i] & MASK;
+            }
+            if (i < nLen) {
+                t += nLimbs[i] & MASK;
+            }
+            this.limbs[i] = (int) t;
+            carry = t >>> LIMB_BITS;
+        }
+        this.limbs[resultLen] = (int) carry;
+        this.length = resultLen + 1;
+        this.normalize();
+    }
+
+    @Override
+    public final void subtract(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        assert this.compareTo(n) >= 0 : "Violation of: this >= n";
+        NaturalNumber3 localN = asNaturalNumber3(n);
+        long borrow = 0;
+        for (int i = 0; i < this.length; i++) {
+            long t = (this.limbs[i] & MASK) - borrow;
+            if (i < localN.length) {
+                t -= localN.limbs[i] & MASK;
+            }
+            this.limbs[i] = (int) t;
+            borrow = t >>> (2 * LIMB_BITS - 1);
+        }
+        this.normalize();
+    }
+
+    @Override
+    public final void multiply(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        NaturalNumber3 localN = asNaturalNumber3(n);
+        int aLen = this.length;
+        int bLen = localN.length;
+        int[] b = localN.limbs;
+        int[] product = new int[aLen + bLen];
+        /*
+         * Schoolbook multiplication; each partial sum fits in an unsigned long
+         * since (2^32 - 1)^2 + 2 * (2^32 - 1) = 2^64 - 1
+         */
+        for (int i = 0; i < aLen; i++) {
+            long a = this.limbs[i] & MASK;
+            long carry = 0;
+            for (int j = 0; j < bLen; j++) {
+                long t = a * (b[j] & MASK) + (product[i + j] & MASK) + carry;
+                product[i + j] = (int) t;
+                carry = t >>> LIMB_BITS;
+            }
+            product[i + bLen] = (int) carry;
+        }
+        this.limbs = product;
+        this.length = aLen + bLen;
+        this.normalize();
+    }
+
+    @Override
+    public final NaturalNumber divide(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        assert !n.isZero() : "Violation of: n > 0";
+        NaturalNumber3 localN = asNaturalNumber3(n);
+        NaturalNumber3 remainder;
+        if (compareLimbs(this.limbs, this.length, localN.limbs,
+                localN.length) < 0) {
+            /*
+             * Quotient is 0 and remainder is all of this
+             */
+            remainder = new NaturalNumber3();
+            remainder.transferFrom(this);
+        } else if (localN.length == 1) {
+            int[] r = { (int) this.divideSmall(localN.limbs[0] & MASK) };
+            remainder = new NaturalNumber3();
+            remainder.setLimbs(r, 1);
+        } else {
+            remainder = this.divideLimbs(localN.limbs, localN.length);
+        }
+        return remainder;
+    }
+
+    @Override
+    public final String toString() {
+        StringBuilder result = new StringBuilder();
+        if (this.length == 0) {
+            result.append('0');
+        } else {
+            /*
+             * Peel off nine decimal digits at a time from a copy of this
+             */
+            NaturalNumber3 copy = new NaturalNumber3();
+            copy.setLimbs(this.limbs, this.length);
+            StringBuilder chunks = new StringBuilder();
+            while (!copy.isZero()) {
+                String chunk = Long.toString(copy.divideSmall(BILLION));
+                chunks.insert(0, chunk);
+                if (!copy.isZero()) {
+                    for (int i = chunk.length(); i < BILLION_DIGITS; i++) {
+                        chunks.insert(0, '0');
+                    }
+                }
+            }
+            result.append(chunks);
+        }
+        return result.toString();
+    }
+
+}
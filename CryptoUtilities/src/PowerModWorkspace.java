@@ -0,0 +1,139 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Caller-owned registers for repeated modular exponentiation with a fixed
+ * modulus m, for {@code CryptoUtilities.powerMod(n, p, workspace)}.
+ *
+ * The registers are allocated once, when the workspace is built, and reused
+ * by every exponentiation, which walks the bits of the exponent from the most
+ * significant one down. When m is odd for a NaturalNumber3, or gcd(m, 10) = 1
+ * otherwise, the work is done by a {@link MontgomeryContext}, and an
+ * exponentiation allocates no NaturalNumbers. For NaturalNumber3 operands it
+ * allocates nothing at all once the registers have grown to the size of m,
+ * since products are formed in the context's limb buffer; other
+ * implementations may still allocate inside their own multiply. Otherwise
+ * each step reduces by dividing by m, and the remainder returned by
+ * {@code divide} is the only NaturalNumber allocated per step.
+ *
+ * A workspace must not be used by more than one thread at a time.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public final class PowerModWorkspace {
+
+    /**
+     * The modulus m.
+     */
+    private final NaturalNumber modulus;
+
+    /**
+     * Montgomery context for m, or null if it cannot handle m.
+     */
+    private final MontgomeryContext context;
+
+    /**
+     * Register holding the base (reduced modulo m) during powerMod.
+     */
+    private final NaturalNumber base;
+
+    /**
+     * Scratch register for squaring.
+     */
+    private final NaturalNumber scratch;
+
+    /**
+     * Bits of the exponent during powerMod.
+     */
+    private final ExponentBits exponent = new ExponentBits();
+
+    /**
+     * Constructor.
+     *
+     * @param m
+     *            the modulus, not modified
+     * @requires m > 1
+     * @ensures this is a workspace for modulus m
+     */
+    public PowerModWorkspace(NaturalNumber m) {
+        assert m.compareTo(CryptoUtilities.newNaturalNumber(m, 1)) > 0
+                : "Violation of: m > 1";
+
+        this.modulus = CryptoUtilities.copyOf(m);
+        this.base = m.newInstance();
+        this.scratch = m.newInstance();
+        MontgomeryContext montgomery = null;
+        if (MontgomeryContext.canHandle(m)) {
+            montgomery = new MontgomeryContext(m);
+        }
+        this.context = montgomery;
+    }
+
+    /**
+     * Reports the modulus of this workspace.
+     *
+     * @return the modulus
+     * @aliases reference returned by {@code modulus}
+     * @ensures modulus = m
+     */
+    public NaturalNumber modulus() {
+        return this.modulus;
+    }
+
+    /**
+     * Updates n to its p-th power modulo m. When a Montgomery context can
+     * handle m this uses sliding windows of k bits (see
+     * {@link MontgomeryContext#powerMod}); the division fallback is always
+     * plain square-and-multiply.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @param k
+     *            the window size, or 0 to pick it from the length of p
+     * @updates n
+     * @requires n is not p and 0 <= k <= MontgomeryContext.MAX_WINDOW_BITS
+     * @ensures n = #n ^ (p) mod m
+     */
+    void powerMod(NaturalNumber n, NaturalNumber p, int k) {
+        if (this.context != null) {
+            this.context.powerMod(n, p, k);
+        } else {
+            /*
+             * Left-to-right square-and-multiply over the bits of p, reducing
+             * modulo m after every product
+             */
+            int bits = this.exponent.load(p);
+            this.base.copyFrom(n);
+            this.reduce(this.base);
+            n.setFromInt(1);
+            this.reduce(n);
+            for (int i = bits - 1; i >= 0; i--) {
+                this.scratch.copyFrom(n);
+                n.multiply(this.scratch);
+                this.reduce(n);
+                if (this.exponent.testBit(i)) {
+                    n.multiply(this.base);
+                    this.reduce(n);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces t by t mod m.
+     *
+     * @param t
+     *            the number to reduce
+     * @updates t
+     * @ensures t = #t mod m
+     */
+    private void reduce(NaturalNumber t) {
+        if (t.compareTo(this.modulus) >= 0) {
+            NaturalNumber remainder = t.divide(this.modulus);
+            t.transferFrom(remainder);
+        }
+    }
+
+}
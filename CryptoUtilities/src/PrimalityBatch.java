@@ -0,0 +1,251 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Batch version of the primality checks in {@code CryptoUtilities.main}: reads
+ * one number per line, runs isPrime1 and isPrime2 on it (and
+ * generateNextLikelyPrime if it is composite) on a pool of worker threads, and
+ * writes one result line per input line, in input order.
+ *
+ * Lines are read only as fast as results are written: at most
+ * {@code WINDOW_PER_THREAD} lines per thread are in flight, and once the
+ * window is full the oldest line's result is waited for and written before
+ * the next line is read. So memory use does not depend on the length of the
+ * input, and output comes out in input order without any sorting.
+ *
+ * Each output line is the input number, the verdicts of isPrime1 and isPrime2
+ * ("prime" or "composite"), and the next likely prime (the number itself if
+ * isPrime2 says it is prime), separated by tabs. A number is a run of ASCII
+ * digits, possibly with leading zeros (which are dropped) and surrounding
+ * white space; a line that is not a number at least 2 gives the line
+ * followed by a tab and "invalid".
+ *
+ * Usage: {@code java PrimalityBatch [input [output [threads]]]}, where "-" or
+ * a missing name stands for standard input or output, and threads defaults to
+ * the number of processors.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public final class PrimalityBatch {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private PrimalityBatch() {
+    }
+
+    /**
+     * Number of lines in flight per worker thread.
+     */
+    private static final int WINDOW_PER_THREAD = 4;
+
+    /**
+     * Name standing for standard input or output.
+     */
+    private static final String STANDARD = "-";
+
+    /**
+     * Pattern of a number: one or more ASCII digits (Character.isDigit would
+     * also let in digits of other scripts, which NaturalNumber3 rejects).
+     */
+    private static final Pattern NUMBER = Pattern.compile("[0-9]+");
+
+    /**
+     * Returns the result line for one input line.
+     *
+     * @param line
+     *            the input line
+     * @return the result line
+     * @ensures <pre>
+     * [screen = the number (without leading zeros), its isPrime1 and isPrime2
+     *  verdicts and its next likely prime, tab-separated, or
+     *  line + "\tinvalid" if line is not a number >= 2 in ASCII digits]
+     * </pre>
+     */
+    static String screen(String line) {
+        String text = line.trim();
+        String result = line + "\tinvalid";
+        if (NUMBER.matcher(text).matches()) {
+            /*
+             * Drop leading zeros, keeping the last digit
+             */
+            int start = 0;
+            while (start < text.length() - 1 && text.charAt(start) == '0') {
+                start++;
+            }
+            NaturalNumber n = new NaturalNumber3(text.substring(start));
+            if (n.compareTo(new NaturalNumber3(2)) >= 0) {
+                String verdict1 = "composite";
+                if (CryptoUtilities.isPrime1(n)) {
+                    verdict1 = "prime";
+                }
+                String verdict2 = "prime";
+                NaturalNumber next = CryptoUtilities.copyOf(n);
+                if (!CryptoUtilities.isPrime2(n)) {
+                    verdict2 = "composite";
+                    CryptoUtilities.generateNextLikelyPrime(next);
+                }
+                result = n + "\t" + verdict1 + "\t" + verdict2 + "\t" + next;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the result of the oldest line in flight.
+     *
+     * @param pending
+     *            the results in flight, oldest first
+     * @param out
+     *            the output
+     * @throws IOException
+     *             if writing fails
+     * @updates pending, out
+     * @requires |pending| > 0
+     * @ensures <pre>
+     * pending = [#pending without its first entry]  and
+     * out = #out * [result of the first entry of #pending] * "\n"
+     * </pre>
+     */
+    private static void writeOldest(Queue<Future<String>> pending, Writer out)
+            throws IOException {
+        try {
+            out.write(pending.remove().get());
+            out.write('\n');
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Screens every line of in on threads worker threads and writes the
+     * results to out, in input order.
+     *
+     * @param in
+     *            the input
+     * @param out
+     *            the output
+     * @param threads
+     *            the number of worker threads
+     * @throws IOException
+     *             if reading or writing fails
+     * @updates in, out
+     * @requires threads > 0
+     * @ensures <pre>
+     * in = [empty]  and
+     * out = #out * [screen(line) + "\n" for each line of #in, in order]
+     * </pre>
+     */
+    public static void run(BufferedReader in, Writer out, int threads)
+            throws IOException {
+        assert threads > 0 : "Violation of: threads > 0";
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            int window = WINDOW_PER_THREAD * threads;
+            Queue<Future<String>> pending = new ArrayDeque<>();
+            String line = in.readLine();
+            while (line != null) {
+                if (pending.size() == window) {
+                    writeOldest(pending, out);
+                }
+                String current = line;
+                pending.add(pool.submit(() -> screen(current)));
+                line = in.readLine();
+            }
+            while (!pending.isEmpty()) {
+                writeOldest(pending, out);
+            }
+            out.flush();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Opens the named input file, or standard input for "-".
+     *
+     * @param name
+     *            the file name, or "-"
+     * @return a reader of the input
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    private static BufferedReader openInput(String name) throws IOException {
+        InputStream stream = System.in;
+        if (!name.equals(STANDARD)) {
+            stream = new FileInputStream(name);
+        }
+        return new BufferedReader(
+                new InputStreamReader(stream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Opens the named output file, or standard output for "-".
+     *
+     * @param name
+     *            the file name, or "-"
+     * @return a writer of the output
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    private static Writer openOutput(String name) throws IOException {
+        OutputStream stream = System.out;
+        if (!name.equals(STANDARD)) {
+            stream = new FileOutputStream(name);
+        }
+        return new BufferedWriter(
+                new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            optionally the input file, the output file and the number of
+     *            threads
+     * @throws IOException
+     *             if reading or writing fails
+     */
+    public static void main(String[] args) throws IOException {
+        String input = STANDARD;
+        String output = STANDARD;
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length > 0) {
+            input = args[0];
+        }
+        if (args.length > 1) {
+            output = args[1];
+        }
+        if (args.length > 2) {
+            threads = Integer.parseInt(args[2]);
+        }
+        try (BufferedReader in = openInput(input);
+                Writer out = openOutput(output)) {
+            run(in, out, threads);
+        }
+    }
+
+}
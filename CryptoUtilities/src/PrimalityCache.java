@@ -0,0 +1,299 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Bounded memo of isPrime1 and isPrime2 verdicts, for callers that ask about
+ * the same numbers again and again.
+ *
+ * Verdicts are keyed by the decimal string of the number, which is the same
+ * for every NaturalNumber implementation. A composite verdict from either
+ * test is exact (a witness proved it), so it answers every later question
+ * about that number; in particular, isPrime1 here reports a number composite
+ * once isPrime2 has proved it so, even if isPrime1 alone would have been
+ * fooled (as it is by 561). A probable-prime verdict remembers what it is
+ * worth: whether isPrime1 passed, and how many isPrime2 rounds passed, so a
+ * later isPrime2 call asking for more rounds than are on record runs the test
+ * again. Below 2^64 isPrime2 is exact, and its prime verdicts answer any
+ * number of rounds.
+ *
+ * When the cache is full, the least recently used number is evicted. The
+ * cache may be shared by many threads: lookups and updates hold its lock
+ * only briefly, and tests run outside it, so two threads may occasionally
+ * test the same number at once (both results are kept).
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public final class PrimalityCache {
+
+    /**
+     * Number of verdicts kept when no capacity is given.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * Initial number of buckets of the table of verdicts.
+     */
+    private static final int INITIAL_BUCKETS = 16;
+
+    /**
+     * Load factor of the table of verdicts.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * Number of bits below which isPrime2 is exact.
+     */
+    private static final int EXACT_BITS = 64;
+
+    /**
+     * What is known about one number.
+     */
+    private static final class Verdict {
+
+        /**
+         * Whether the number is known to be composite.
+         */
+        private final boolean composite;
+
+        /**
+         * Whether the number passed isPrime1.
+         */
+        private final boolean passedPrime1;
+
+        /**
+         * Number of isPrime2 rounds the number passed (Integer.MAX_VALUE if
+         * isPrime2 is exact for it).
+         */
+        private final int rounds;
+
+        /**
+         * Constructor.
+         *
+         * @param composite
+         *            whether the number is known to be composite
+         * @param passedPrime1
+         *            whether the number passed isPrime1
+         * @param rounds
+         *            number of isPrime2 rounds passed
+         */
+        Verdict(boolean composite, boolean passedPrime1, int rounds) {
+            this.composite = composite;
+            this.passedPrime1 = passedPrime1;
+            this.rounds = rounds;
+        }
+
+        /**
+         * Returns what this and other know together.
+         *
+         * @param other
+         *            the other verdict, or null
+         * @return the combined verdict
+         */
+        Verdict merge(Verdict other) {
+            Verdict result = this;
+            if (other != null) {
+                result = new Verdict(this.composite || other.composite,
+                        this.passedPrime1 || other.passedPrime1,
+                        Math.max(this.rounds, other.rounds));
+            }
+            return result;
+        }
+
+    }
+
+    /**
+     * The verdicts, least recently used first; guarded by itself.
+     */
+    private final Map<String, Verdict> verdicts;
+
+    /**
+     * Number of questions answered from the cache.
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Number of questions that needed a test.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor with the default capacity.
+     *
+     * @ensures this is an empty cache of DEFAULT_CAPACITY verdicts
+     */
+    public PrimalityCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity
+     *            the largest number of verdicts kept
+     * @requires capacity > 0
+     * @ensures this is an empty cache of capacity verdicts
+     */
+    public PrimalityCache(int capacity) {
+        assert capacity > 0 : "Violation of: capacity > 0";
+
+        this.verdicts = new LinkedHashMap<String, Verdict>(INITIAL_BUCKETS,
+                LOAD_FACTOR, true) {
+
+            /**
+             * Serialization id (LinkedHashMap is Serializable).
+             */
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, Verdict> eldest) {
+                return this.size() > capacity;
+            }
+
+        };
+    }
+
+    /**
+     * Returns the verdict on record for key, marking it recently used.
+     *
+     * @param key
+     *            the key
+     * @return the verdict, or null if there is none
+     */
+    private Verdict lookup(String key) {
+        synchronized (this.verdicts) {
+            return this.verdicts.get(key);
+        }
+    }
+
+    /**
+     * Adds what verdict says about key to the record.
+     *
+     * @param key
+     *            the key
+     * @param verdict
+     *            the new verdict
+     */
+    private void record(String key, Verdict verdict) {
+        synchronized (this.verdicts) {
+            this.verdicts.put(key, verdict.merge(this.verdicts.get(key)));
+        }
+    }
+
+    /**
+     * Reports whether n is a prime, as {@code CryptoUtilities.isPrime1} does,
+     * answering from the cache when it can.
+     *
+     * @param n
+     *            number to be checked
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1
+     * @ensures <pre>
+     * isPrime1 = [as for CryptoUtilities.isPrime1(n), except false if n is
+     *            already known to be composite]
+     * </pre>
+     */
+    public boolean isPrime1(NaturalNumber n) {
+        String key = n.toString();
+        Verdict verdict = this.lookup(key);
+        boolean isPrime;
+        if (verdict != null && (verdict.composite || verdict.passedPrime1)) {
+            this.hits.incrementAndGet();
+            isPrime = !verdict.composite;
+        } else {
+            this.misses.incrementAndGet();
+            isPrime = CryptoUtilities.isPrime1(n);
+            this.record(key, new Verdict(!isPrime, isPrime, 0));
+        }
+        return isPrime;
+    }
+
+    /**
+     * Reports whether n is a prime, as {@code CryptoUtilities.isPrime2(n)}
+     * does, answering from the cache when it can.
+     *
+     * @param n
+     *            number to be checked
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1
+     * @ensures isPrime2 = [as for CryptoUtilities.isPrime2(n)]
+     */
+    public boolean isPrime2(NaturalNumber n) {
+        return this.isPrime2(n, CryptoUtilities.ITERATIONS);
+    }
+
+    /**
+     * Reports whether n is a prime, as
+     * {@code CryptoUtilities.isPrime2(n, rounds)} does, answering from the
+     * cache if n is known to be composite or has already passed at least
+     * rounds rounds.
+     *
+     * @param n
+     *            number to be checked
+     * @param rounds
+     *            number of random witnesses to try for n >= 2^64
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1 and rounds > 0
+     * @ensures isPrime2 = [as for CryptoUtilities.isPrime2(n, rounds)]
+     */
+    public boolean isPrime2(NaturalNumber n, int rounds) {
+        String key = n.toString();
+        Verdict verdict = this.lookup(key);
+        boolean isPrime;
+        if (verdict != null
+                && (verdict.composite || verdict.rounds >= rounds)) {
+            this.hits.incrementAndGet();
+            isPrime = !verdict.composite;
+        } else {
+            this.misses.incrementAndGet();
+            isPrime = CryptoUtilities.isPrime2(n, rounds);
+            int passed = 0;
+            if (isPrime) {
+                passed = rounds;
+                if (UniformSampler.bitLength(n) <= EXACT_BITS) {
+                    passed = Integer.MAX_VALUE;
+                }
+            }
+            this.record(key, new Verdict(!isPrime, false, passed));
+        }
+        return isPrime;
+    }
+
+    /**
+     * Reports the number of questions answered from the cache.
+     *
+     * @return the number of hits
+     */
+    public long hits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Reports the number of questions that needed a test.
+     *
+     * @return the number of misses
+     */
+    public long misses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Reports the number of numbers with a verdict on record.
+     *
+     * @return the number of verdicts
+     * @ensures size <= capacity
+     */
+    public int size() {
+        synchronized (this.verdicts) {
+            return this.verdicts.size();
+        }
+    }
+
+}
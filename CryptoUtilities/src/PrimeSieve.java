@@ -0,0 +1,241 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
+/**
+ * Enumerates every prime in a range [a, b] with a segmented sieve of
+ * Eratosthenes, instead of testing each integer with isPrime2.
+ *
+ * The odd primes up to sqrt(b) are sieved once per call. The range is then
+ * cut into segments of 2^19 consecutive integers, aligned to multiples of
+ * 2^19; each segment keeps only its odd numbers, one bit each, in a 32 KiB
+ * bitset that stays in cache while every base prime crosses off its
+ * multiples. Segments are independent of each other, so a parallel stream
+ * sieves them on as many threads as it has, and the ordered stream still
+ * delivers the primes in increasing order.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public final class PrimeSieve {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private PrimeSieve() {
+    }
+
+    /**
+     * Largest upper end of a range accepted, 2^52; the odd numbers up to
+     * sqrt(b) = 2^26 then fit in a 4 MiB bitset when the base primes are
+     * sieved.
+     */
+    public static final long MAX_BOUND = 1L << 52;
+
+    /**
+     * Number of odd numbers in a segment, one bit each.
+     */
+    private static final int SEGMENT_ODDS = 1 << 18;
+
+    /**
+     * Number of integers covered by a segment.
+     */
+    private static final long SEGMENT_SPAN = 2L * SEGMENT_ODDS;
+
+    /**
+     * Number of bits in a word of a bitset.
+     */
+    private static final int WORD_BITS = Long.SIZE;
+
+    /**
+     * Useful constant, not a magic number: 3.
+     */
+    private static final int THREE = 3;
+
+    /**
+     * Returns floor(sqrt(n)).
+     *
+     * @param n
+     *            the number
+     * @return the integer square root of n
+     * @requires 0 <= n <= MAX_BOUND
+     * @ensures isqrt^2 <= n < (isqrt + 1)^2
+     */
+    private static long isqrt(long n) {
+        long r = (long) Math.sqrt(n);
+        while (r * r > n) {
+            r--;
+        }
+        while ((r + 1) * (r + 1) <= n) {
+            r++;
+        }
+        return r;
+    }
+
+    /**
+     * Returns the odd primes up to limit, in increasing order.
+     *
+     * @param limit
+     *            the limit
+     * @return the odd primes <= limit
+     * @requires 0 <= limit
+     * @ensures oddPrimesUpTo = [the odd primes <= limit, increasing]
+     */
+    private static int[] oddPrimesUpTo(int limit) {
+        /*
+         * Bit i stands for 2i + 1, as in segment
+         */
+        int size = (limit + 1) / 2;
+        long[] composite = new long[(size + WORD_BITS - 1) / WORD_BITS];
+        int count = 0;
+        for (int i = 1; i < size; i++) {
+            if ((composite[i / WORD_BITS] & (1L << i)) == 0) {
+                count++;
+                long p = 2L * i + 1;
+                for (long j = p * p / 2; j < size; j += p) {
+                    composite[(int) (j / WORD_BITS)] |= 1L << j;
+                }
+            }
+        }
+        int[] primes = new int[count];
+        int k = 0;
+        for (int i = 1; i < size; i++) {
+            if ((composite[i / WORD_BITS] & (1L << i)) == 0) {
+                primes[k] = 2 * i + 1;
+                k++;
+            }
+        }
+        return primes;
+    }
+
+    /**
+     * Returns the odd primes in [a, b] that lie in the segment starting at
+     * low.
+     *
+     * @param low
+     *            start of the segment, a multiple of SEGMENT_SPAN
+     * @param a
+     *            lower end of the range
+     * @param b
+     *            upper end of the range
+     * @param base
+     *            the odd primes up to sqrt(b)
+     * @return the primes found, in increasing order
+     * @ensures <pre>
+     * segment = [the odd primes in [max(a, low), min(b, low + SEGMENT_SPAN)),
+     *            in increasing order]
+     * </pre>
+     */
+    private static LongStream segment(long low, long a, long b,
+            int[] base) {
+        /*
+         * Bit i of the segment stands for low + 2i + 1; each base prime p
+         * crosses off its odd multiples from max(p^2, first one >= low) on
+         */
+        long[] composite = new long[SEGMENT_ODDS / WORD_BITS];
+        long high = low + SEGMENT_SPAN;
+        for (int k = 0; k < base.length && (long) base[k] * base[k] < high;
+                k++) {
+            long p = base[k];
+            long start = (low + p) / p * p;
+            if (start % 2 == 0) {
+                start += p;
+            }
+            start = Math.max(start, p * p);
+            for (long i = (start - low - 1) / 2; i < SEGMENT_ODDS; i += p) {
+                composite[(int) (i / WORD_BITS)] |= 1L << i;
+            }
+        }
+        /*
+         * Collect the bits left clear for odd numbers in [max(a, 3), b]
+         */
+        long first = Math.max(0, Math.floorDiv(Math.max(a, THREE) - low, 2));
+        long last = Math.min(SEGMENT_ODDS - 1, Math.floorDiv(b - low - 1, 2));
+        LongStream.Builder found = LongStream.builder();
+        for (long i = first; i <= last; i++) {
+            if ((composite[(int) (i / WORD_BITS)] & (1L << i)) == 0) {
+                found.add(low + 2 * i + 1);
+            }
+        }
+        return found.build();
+    }
+
+    /**
+     * Returns the primes in [a, b], in increasing order. The stream is lazy:
+     * a segment is sieved only when its primes are needed; a parallel
+     * stream sieves segments concurrently.
+     *
+     * @param a
+     *            lower end of the range
+     * @param b
+     *            upper end of the range
+     * @return the primes in [a, b]
+     * @requires 0 <= a and b <= MAX_BOUND
+     * @ensures primes = [the primes p with a <= p <= b, in increasing order]
+     */
+    public static LongStream primes(long a, long b) {
+        assert 0 <= a : "Violation of: 0 <= a";
+        assert b <= MAX_BOUND : "Violation of: b <= MAX_BOUND";
+
+        LongStream result = LongStream.empty();
+        if (a <= b) {
+            int[] base = oddPrimesUpTo((int) isqrt(b));
+            LongStream two = LongStream.empty();
+            if (a <= 2 && 2 <= b) {
+                two = LongStream.of(2);
+            }
+            LongStream odd = LongStream
+                    .rangeClosed(a / SEGMENT_SPAN, b / SEGMENT_SPAN)
+                    .flatMap(s -> segment(s * SEGMENT_SPAN, a, b, base));
+            result = LongStream.concat(two, odd);
+        }
+        return result;
+    }
+
+    /**
+     * Passes every prime in [a, b] to consumer, in increasing order.
+     *
+     * @param a
+     *            lower end of the range
+     * @param b
+     *            upper end of the range
+     * @param consumer
+     *            the consumer
+     * @requires 0 <= a and b <= MAX_BOUND
+     * @ensures [consumer has accepted the primes in [a, b], in increasing
+     *          order]
+     */
+    public static void forEachPrime(long a, long b, LongConsumer consumer) {
+        primes(a, b).forEach(consumer);
+    }
+
+    /**
+     * Passes every prime in [a, b] to consumer, in increasing order, with the
+     * segments sieved in parallel on pool. The consumer is called from the
+     * pool's threads, but never by two at once.
+     *
+     * @param a
+     *            lower end of the range
+     * @param b
+     *            upper end of the range
+     * @param consumer
+     *            the consumer
+     * @param pool
+     *            the pool to sieve on
+     * @requires 0 <= a and b <= MAX_BOUND
+     * @ensures [consumer has accepted the primes in [a, b], in increasing
+     *          order]
+     */
+    public static void forEachPrime(long a, long b, LongConsumer consumer,
+            ForkJoinPool pool) {
+        assert pool != null : "Violation of: pool is not null";
+
+        /*
+         * A parallel stream run from inside a pool forks its tasks into that
+         * pool
+         */
+        pool.submit(() -> primes(a, b).parallel().forEachOrdered(consumer))
+                .join();
+    }
+
+}
@@ -0,0 +1,157 @@
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * One worker of the parallel search in
+ * {@code CryptoUtilities.generateNextLikelyPrime(n, pool)}.
+ *
+ * The odd candidates start, start + 2, ... are cut into windows of
+ * {@code window} candidates, numbered 0, 1, 2, ...; worker t of w scans
+ * windows t, t + w, t + 2w, ... in increasing order, each one left to right.
+ * The first window found to hold a likely prime is published through a shared
+ * {@code AtomicLong} (keeping the minimum), and every worker stops as soon as
+ * its current window is past the published one. Because each worker scans its
+ * windows in order, every window before the published one has been scanned
+ * completely by the time all workers finish, so the smallest likely prime
+ * found does not depend on the number of workers or on scheduling.
+ *
+ * Each worker gets its own copy of the first candidate, made on the calling
+ * thread: copying a NaturalNumber may take its digits off and put them back,
+ * so workers must never copy (or otherwise touch) a shared one.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+final class PrimeWindowSearch extends RecursiveTask<NaturalNumber> {
+
+    /**
+     * Serialization id (RecursiveTask is Serializable).
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * First odd candidate of window 0; owned by this worker, which moves it
+     * along as its window base.
+     */
+    private final NaturalNumber start;
+
+    /**
+     * Residues of start modulo the small primes, shared and never modified.
+     */
+    private final int[] startResidues;
+
+    /**
+     * Index of this worker, also the number of its first window.
+     */
+    private final int worker;
+
+    /**
+     * Number of workers, also the distance between this worker's windows.
+     */
+    private final int workers;
+
+    /**
+     * Number of odd candidates in a window.
+     */
+    private final int window;
+
+    /**
+     * Smallest window number known to hold a likely prime, shared by all
+     * workers; Long.MAX_VALUE until one is found.
+     */
+    private final AtomicLong settled;
+
+    /**
+     * Window number holding the result of this worker, or Long.MAX_VALUE if
+     * it found none.
+     */
+    private long found = Long.MAX_VALUE;
+
+    /**
+     * Constructor.
+     *
+     * @param start
+     *            first odd candidate, owned by this worker from now on
+     * @param startResidues
+     *            residues of start, as returned by SmallPrimes.residues
+     * @param worker
+     *            index of this worker
+     * @param workers
+     *            number of workers
+     * @param window
+     *            number of odd candidates in a window
+     * @param settled
+     *            smallest window number known to hold a likely prime
+     * @requires <pre>
+     * start is odd and start > SmallPrimes.largest()  and
+     * [start is not shared with any other thread]  and
+     * 0 <= worker < workers  and  window > 0  and
+     * 2 * window * workers <= Integer.MAX_VALUE
+     * </pre>
+     */
+    PrimeWindowSearch(NaturalNumber start, int[] startResidues, int worker,
+            int workers, int window, AtomicLong settled) {
+        this.start = start;
+        this.startResidues = startResidues;
+        this.worker = worker;
+        this.workers = workers;
+        this.window = window;
+        this.settled = settled;
+    }
+
+    /**
+     * Reports the window number holding the result of this worker.
+     *
+     * @return the window number, or Long.MAX_VALUE if none was found
+     */
+    long found() {
+        return this.found;
+    }
+
+    @Override
+    protected NaturalNumber compute() {
+        /*
+         * Move the window base and its residues to this worker's first
+         * window, then step by a whole round of windows each time
+         */
+        NaturalNumber base = this.start;
+        int[] residues = this.startResidues.clone();
+        NaturalNumber offset = this.start.newInstance();
+        offset.setFromInt(2 * this.window * this.worker);
+        base.add(offset);
+        SmallPrimes.advance(residues, 2 * this.window * this.worker);
+        int stride = 2 * this.window * this.workers;
+
+        boolean[] composite = new boolean[this.window];
+        NaturalNumber candidate = this.start.newInstance();
+        NaturalNumber result = null;
+        long k = this.worker;
+        while (result == null && k < this.settled.get()) {
+            SmallPrimes.sieveOddWindow(residues, composite);
+            boolean isPrime = false;
+            for (int i = 0; !isPrime && i < this.window
+                    && k < this.settled.get(); i++) {
+                if (!composite[i]) {
+                    candidate.copyFrom(base);
+                    offset.setFromInt(2 * i);
+                    candidate.add(offset);
+                    isPrime = CryptoUtilities.isPrime2(candidate);
+                }
+            }
+            if (isPrime) {
+                result = candidate;
+                this.found = k;
+                this.settled.accumulateAndGet(k, Math::min);
+            } else {
+                offset.setFromInt(stride);
+                base.add(offset);
+                SmallPrimes.advance(residues, stride);
+                k += this.workers;
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,364 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import components.naturalnumber.NaturalNumber;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Generates {@link RSAKeyPair}s of a fixed size on a {@link ForkJoinPool}.
+ *
+ * Each key runs as one task: the search for q is forked while the task
+ * searches for p itself, so the two primes are found concurrently. A prime is
+ * found by drawing a random start of exactly half the key size, with its top
+ * two bits set (so that n = p * q has exactly the key size), and moving to the
+ * next likely prime with generateNextLikelyPrime; starts whose prime would
+ * overflow the half size, or for which gcd(e, p - 1) /= 1, are drawn again.
+ * Generating a batch forks one task per key, so the pool keeps every worker
+ * busy with key searches, prime searches or both.
+ *
+ * Usage of the throughput mode:
+ * {@code java RSAKeyGenerator [bits [count [threads]]]}; it generates count
+ * keys of the given size on a pool of the given number of threads and reports
+ * keys per second.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public final class RSAKeyGenerator {
+
+    /**
+     * The usual public exponent, 2^16 + 1.
+     */
+    public static final int DEFAULT_EXPONENT = 65537;
+
+    /**
+     * Smallest key size, in bits, accepted.
+     */
+    public static final int MIN_BITS = 16;
+
+    /**
+     * Useful constant, not a magic number: 3.
+     */
+    private static final int THREE = 3;
+
+    /**
+     * Key size used by main when none is given.
+     */
+    private static final int DEFAULT_BITS = 1024;
+
+    /**
+     * Number of keys generated by main when none is given.
+     */
+    private static final int DEFAULT_COUNT = 100;
+
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Size of n, in bits.
+     */
+    private final int bits;
+
+    /**
+     * The public exponent e.
+     */
+    private final int exponent;
+
+    /**
+     * Number whose implementation the keys use.
+     */
+    private final NaturalNumber like;
+
+    /**
+     * Source of the random prime starts.
+     */
+    private final RandomSource source;
+
+    /**
+     * The pool the searches run on.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor using e = 65537, NaturalNumber3 and per-thread randomness.
+     *
+     * @param bits
+     *            the size of n, in bits
+     * @param pool
+     *            the pool to run the searches on
+     * @requires bits is even and bits >= MIN_BITS
+     * @ensures this generates keys with a bits-bit n on pool
+     */
+    public RSAKeyGenerator(int bits, ForkJoinPool pool) {
+        this(bits, DEFAULT_EXPONENT, new NaturalNumber3(),
+                RandomSources.perThread(), pool);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param bits
+     *            the size of n, in bits
+     * @param exponent
+     *            the public exponent e
+     * @param like
+     *            number whose implementation the keys use, not modified
+     * @param source
+     *            source of the random prime starts
+     * @param pool
+     *            the pool to run the searches on
+     * @requires <pre>
+     * bits is even  and  bits >= MIN_BITS  and
+     * exponent is odd  and  exponent > 1
+     * </pre>
+     * @ensures this generates keys with a bits-bit n and e = exponent on pool
+     */
+    public RSAKeyGenerator(int bits, int exponent, NaturalNumber like,
+            RandomSource source, ForkJoinPool pool) {
+        assert bits % 2 == 0 : "Violation of: bits is even";
+        assert bits >= MIN_BITS : "Violation of: bits >= MIN_BITS";
+        assert exponent % 2 == 1 : "Violation of: exponent is odd";
+        assert exponent > 1 : "Violation of: exponent > 1";
+        assert pool != null : "Violation of: pool is not null";
+
+        this.bits = bits;
+        this.exponent = exponent;
+        this.like = like.newInstance();
+        this.source = source;
+        this.pool = pool;
+    }
+
+    /**
+     * Generates one key pair.
+     *
+     * @return the key pair
+     * @ensures <pre>
+     * generate.n has exactly bits bits  and  generate.e = exponent  and
+     * generate.p and generate.q are very likely prime
+     * </pre>
+     */
+    public RSAKeyPair generate() {
+        return this.pool.invoke(new KeyTask());
+    }
+
+    /**
+     * Generates count key pairs, all of them at once on the pool.
+     *
+     * @param count
+     *            the number of key pairs
+     * @return the key pairs
+     * @requires count >= 0
+     * @ensures |generate| = count and [every entry is as for generate()]
+     */
+    public List<RSAKeyPair> generate(int count) {
+        assert count >= 0 : "Violation of: count >= 0";
+
+        return this.pool.invoke(new BatchTask(count));
+    }
+
+    /**
+     * Returns a likely prime p of exactly bits / 2 bits, with its top two
+     * bits set, such that gcd(e, p - 1) = 1.
+     *
+     * @return the prime
+     * @ensures <pre>
+     * 3 * 2^(bits/2 - 2) <= randomPrime < 2^(bits/2)  and
+     * [randomPrime is very likely prime]  and
+     * gcd(e, randomPrime - 1) = 1
+     * </pre>
+     */
+    private NaturalNumber randomPrime() {
+        /*
+         * Starts are drawn uniformly from [3 * 2^(h-2), 2^h - 1], with
+         * h = bits / 2; everything is built here so that concurrent searches
+         * share no NaturalNumbers
+         */
+        int half = this.bits / 2;
+        NaturalNumber low = CryptoUtilities.newNaturalNumber(this.like, 2);
+        low.power(half - 2);
+        NaturalNumber range = CryptoUtilities.copyOf(low);
+        range.decrement();
+        low.multiply(CryptoUtilities.newNaturalNumber(this.like, THREE));
+        NaturalNumber limit = CryptoUtilities.newNaturalNumber(this.like, 2);
+        limit.power(half);
+        NaturalNumber one = CryptoUtilities.newNaturalNumber(this.like, 1);
+        UniformSampler sampler = new UniformSampler(range);
+
+        NaturalNumber result = this.like.newInstance();
+        boolean found = false;
+        while (!found) {
+            sampler.next(result, this.source);
+            result.add(low);
+            CryptoUtilities.generateNextLikelyPrime(result);
+            if (result.compareTo(limit) < 0) {
+                NaturalNumber g = CryptoUtilities.copyOf(result);
+                g.decrement();
+                CryptoUtilities.reduceToGCD(g, CryptoUtilities
+                        .newNaturalNumber(this.like, this.exponent));
+                found = g.equals(one);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the key pair for the primes p and q.
+     *
+     * @param p
+     *            one prime
+     * @param q
+     *            the other prime
+     * @return the key pair
+     * @requires <pre>
+     * p /= q  and  p, q are prime  and
+     * gcd(e, p - 1) = 1  and  gcd(e, q - 1) = 1
+     * </pre>
+     * @ensures keyPair = [the key pair for p, q and e]
+     */
+    private RSAKeyPair keyPair(NaturalNumber p, NaturalNumber q) {
+        NaturalNumber larger = p;
+        NaturalNumber smaller = q;
+        if (p.compareTo(q) < 0) {
+            larger = q;
+            smaller = p;
+        }
+        /*
+         * d = e^(-1) mod (p - 1)(q - 1); e is prime to both factors, hence to
+         * their product
+         */
+        NaturalNumber phi = CryptoUtilities.copyOf(larger);
+        phi.decrement();
+        NaturalNumber qMinus1 = CryptoUtilities.copyOf(smaller);
+        qMinus1.decrement();
+        phi.multiply(qMinus1);
+        NaturalNumber e = CryptoUtilities.newNaturalNumber(this.like,
+                this.exponent);
+        NaturalNumber d = CryptoUtilities.copyOf(e);
+        CryptoUtilities.modInverse(d, phi);
+        return new RSAKeyPair(larger, smaller, e, d);
+    }
+
+    /**
+     * Task searching for one prime.
+     */
+    private final class PrimeTask extends RecursiveTask<NaturalNumber> {
+
+        /**
+         * Serialization id (RecursiveTask is Serializable).
+         */
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected NaturalNumber compute() {
+            return RSAKeyGenerator.this.randomPrime();
+        }
+
+    }
+
+    /**
+     * Task generating one key pair; it forks the search for q and searches
+     * for p itself.
+     */
+    private final class KeyTask extends RecursiveTask<RSAKeyPair> {
+
+        /**
+         * Serialization id (RecursiveTask is Serializable).
+         */
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected RSAKeyPair compute() {
+            PrimeTask other = new PrimeTask();
+            other.fork();
+            NaturalNumber p = RSAKeyGenerator.this.randomPrime();
+            NaturalNumber q = other.join();
+            while (p.equals(q)) {
+                q = RSAKeyGenerator.this.randomPrime();
+            }
+            return RSAKeyGenerator.this.keyPair(p, q);
+        }
+
+    }
+
+    /**
+     * Task generating a batch of key pairs, one forked task per key.
+     */
+    private final class BatchTask extends RecursiveTask<List<RSAKeyPair>> {
+
+        /**
+         * Serialization id (RecursiveTask is Serializable).
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Number of key pairs.
+         */
+        private final int count;
+
+        /**
+         * Constructor.
+         *
+         * @param count
+         *            number of key pairs
+         */
+        BatchTask(int count) {
+            this.count = count;
+        }
+
+        @Override
+        protected List<RSAKeyPair> compute() {
+            List<KeyTask> tasks = new ArrayList<>();
+            for (int i = 0; i < this.count; i++) {
+                KeyTask task = new KeyTask();
+                task.fork();
+                tasks.add(task);
+            }
+            List<RSAKeyPair> result = new ArrayList<>();
+            for (KeyTask task : tasks) {
+                result.add(task.join());
+            }
+            return result;
+        }
+
+    }
+
+    /**
+     * Main method: the throughput mode.
+     *
+     * @param args
+     *            optionally the key size, the number of keys and the number of
+     *            threads
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        int bits = DEFAULT_BITS;
+        int count = DEFAULT_COUNT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length > 0) {
+            bits = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            count = Integer.parseInt(args[1]);
+        }
+        if (args.length > 2) {
+            threads = Integer.parseInt(args[2]);
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        RSAKeyGenerator generator = new RSAKeyGenerator(bits, pool);
+        long start = System.nanoTime();
+        List<RSAKeyPair> keys = generator.generate(count);
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+        out.println(String.format("%d keys of %d bits on %d threads: %.3f s, "
+                + "%.3f keys/s", keys.size(), bits, threads,
+                elapsed / NANOS_PER_SECOND,
+                keys.size() * NANOS_PER_SECOND / elapsed));
+        out.close();
+    }
+
+}
@@ -0,0 +1,267 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * An RSA key pair: the primes p and q, the public key (n, e), the private
+ * exponent d, and the Chinese Remainder Theorem values dP, dQ and qInv used
+ * to decrypt or sign with two half-size exponentiations.
+ *
+ * {@link #privatePower} applies the private key that way: c^dP mod p and
+ * c^dQ mod q are computed separately (each with operands half the size of n,
+ * so roughly a quarter of the work of c^d mod n once the two are added up),
+ * then recombined with Garner's formula. Exponentiation reads the digits of
+ * dP and dQ off and puts them back, so a key pair must not be used by more
+ * than one thread at a time.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public final class RSAKeyPair {
+
+    /**
+     * The larger prime p.
+     */
+    private final NaturalNumber p;
+
+    /**
+     * The smaller prime q.
+     */
+    private final NaturalNumber q;
+
+    /**
+     * The modulus n = p * q.
+     */
+    private final NaturalNumber n;
+
+    /**
+     * The public exponent e.
+     */
+    private final NaturalNumber e;
+
+    /**
+     * The private exponent d = e^(-1) mod (p - 1)(q - 1).
+     */
+    private final NaturalNumber d;
+
+    /**
+     * d mod (p - 1).
+     */
+    private final NaturalNumber dP;
+
+    /**
+     * d mod (q - 1).
+     */
+    private final NaturalNumber dQ;
+
+    /**
+     * q^(-1) mod p.
+     */
+    private final NaturalNumber qInv;
+
+    /**
+     * Constructor; the values are not copied, so the caller must not change
+     * them afterwards.
+     *
+     * @param p
+     *            the larger prime
+     * @param q
+     *            the smaller prime
+     * @param e
+     *            the public exponent
+     * @param d
+     *            the private exponent
+     * @requires <pre>
+     * p > q  and  p, q are prime  and
+     * (e * d) mod ((p - 1)(q - 1)) = 1
+     * </pre>
+     * @ensures [this is the key pair for p, q, e and d]
+     */
+    public RSAKeyPair(NaturalNumber p, NaturalNumber q, NaturalNumber e,
+            NaturalNumber d) {
+        assert p.compareTo(q) > 0 : "Violation of: p > q";
+
+        this.p = p;
+        this.q = q;
+        this.e = e;
+        this.d = d;
+        this.n = CryptoUtilities.copyOf(p);
+        this.n.multiply(q);
+        /*
+         * dP = d mod (p - 1), dQ = d mod (q - 1), qInv = q^(-1) mod p
+         */
+        NaturalNumber pMinus1 = CryptoUtilities.copyOf(p);
+        pMinus1.decrement();
+        NaturalNumber qMinus1 = CryptoUtilities.copyOf(q);
+        qMinus1.decrement();
+        this.dP = CryptoUtilities.copyOf(d).divide(pMinus1);
+        this.dQ = CryptoUtilities.copyOf(d).divide(qMinus1);
+        this.qInv = CryptoUtilities.copyOf(q);
+        CryptoUtilities.modInverse(this.qInv, p);
+    }
+
+    /**
+     * Reports p.
+     *
+     * @return the larger prime
+     * @aliases reference returned by {@code p}
+     */
+    public NaturalNumber p() {
+        return this.p;
+    }
+
+    /**
+     * Reports q.
+     *
+     * @return the smaller prime
+     * @aliases reference returned by {@code q}
+     */
+    public NaturalNumber q() {
+        return this.q;
+    }
+
+    /**
+     * Reports n.
+     *
+     * @return the modulus n = p * q
+     * @aliases reference returned by {@code n}
+     */
+    public NaturalNumber n() {
+        return this.n;
+    }
+
+    /**
+     * Reports e.
+     *
+     * @return the public exponent
+     * @aliases reference returned by {@code e}
+     */
+    public NaturalNumber e() {
+        return this.e;
+    }
+
+    /**
+     * Reports d.
+     *
+     * @return the private exponent
+     * @aliases reference returned by {@code d}
+     */
+    public NaturalNumber d() {
+        return this.d;
+    }
+
+    /**
+     * Reports dP.
+     *
+     * @return d mod (p - 1)
+     * @aliases reference returned by {@code dP}
+     */
+    public NaturalNumber dP() {
+        return this.dP;
+    }
+
+    /**
+     * Reports dQ.
+     *
+     * @return d mod (q - 1)
+     * @aliases reference returned by {@code dQ}
+     */
+    public NaturalNumber dQ() {
+        return this.dQ;
+    }
+
+    /**
+     * Reports qInv.
+     *
+     * @return q^(-1) mod p
+     * @aliases reference returned by {@code qInv}
+     */
+    public NaturalNumber qInv() {
+        return this.qInv;
+    }
+
+    /**
+     * Updates c to c^d mod n, computed by the Chinese Remainder Theorem.
+     *
+     * @param c
+     *            the number to raise to the private exponent
+     * @updates c
+     * @requires c < n
+     * @ensures c = #c ^ (d) mod n
+     */
+    public void privatePower(NaturalNumber c) {
+        assert c.compareTo(this.n) < 0 : "Violation of: c < n";
+
+        NaturalNumber cq = CryptoUtilities.copyOf(c);
+        CryptoUtilities.powerMod(c, this.dP, this.p);
+        CryptoUtilities.powerMod(cq, this.dQ, this.q);
+        this.recombine(c, cq);
+    }
+
+    /**
+     * Updates c to c^d mod n, computed by the Chinese Remainder Theorem with
+     * the exponentiation modulo q run on pool while the calling thread does
+     * the one modulo p.
+     *
+     * @param c
+     *            the number to raise to the private exponent
+     * @param pool
+     *            the pool to run the exponentiation modulo q on
+     * @updates c
+     * @requires c < n
+     * @ensures c = #c ^ (d) mod n
+     */
+    public void privatePower(NaturalNumber c, ForkJoinPool pool) {
+        assert c.compareTo(this.n) < 0 : "Violation of: c < n";
+        assert pool != null : "Violation of: pool is not null";
+
+        NaturalNumber cq = CryptoUtilities.copyOf(c);
+        ForkJoinTask<?> modQ = pool.submit(
+                () -> CryptoUtilities.powerMod(cq, this.dQ, this.q));
+        CryptoUtilities.powerMod(c, this.dP, this.p);
+        modQ.join();
+        this.recombine(c, cq);
+    }
+
+    /**
+     * Replaces mp by the x < n with x mod p = mp and x mod q = mq, by
+     * Garner's formula x = mq + q * ((mp - mq) * qInv mod p).
+     *
+     * @param mp
+     *            the residue modulo p
+     * @param mq
+     *            the residue modulo q, not modified
+     * @updates mp
+     * @requires mp < p and mq < q
+     * @ensures mp mod p = #mp and mp mod q = mq and mp < n
+     */
+    private void recombine(NaturalNumber mp, NaturalNumber mq) {
+        /*
+         * mq < q < p, so mp + p - mq is positive and below 2p
+         */
+        mp.add(this.p);
+        mp.subtract(mq);
+        mp.multiply(this.qInv);
+        NaturalNumber remainder = mp.divide(this.p);
+        remainder.multiply(this.q);
+        remainder.add(mq);
+        mp.transferFrom(remainder);
+    }
+
+    /**
+     * Reports whether encrypting and then decrypting a test message with this
+     * key pair gives the message back (the pairwise consistency test).
+     *
+     * @return true iff the test message survives the round trip
+     * @ensures isConsistent = [(2^e mod n)^d mod n = 2]
+     */
+    public boolean isConsistent() {
+        NaturalNumber message = CryptoUtilities.newNaturalNumber(this.n, 2);
+        NaturalNumber text = CryptoUtilities.copyOf(message);
+        CryptoUtilities.powerMod(text, this.e, this.n);
+        this.privatePower(text);
+        return text.equals(message);
+    }
+
+}
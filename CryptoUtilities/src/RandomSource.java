@@ -0,0 +1,28 @@
+/**
+ * Source of uniformly distributed pseudo-random numbers for the
+ * probabilistic parts of CryptoUtilities, e.g., picking Miller-Rabin
+ * witnesses. Implementations in {@link RandomSources} are safe to share
+ * between threads.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public interface RandomSource {
+
+    /**
+     * Returns a random double uniformly distributed in [0, 1).
+     *
+     * @return the random double
+     * @ensures 0 <= nextDouble < 1
+     */
+    double nextDouble();
+
+    /**
+     * Returns a random long uniformly distributed over all 2^64 values.
+     *
+     * @return the random long
+     * @ensures [nextLong is uniformly distributed over all long values]
+     */
+    long nextLong();
+
+}
@@ -0,0 +1,115 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Factories for {@link RandomSource}s that can be shared between threads
+ * without contention: every thread draws from a stream of its own, so no two
+ * threads ever wait on (or corrupt) the same generator state.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public final class RandomSources {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private RandomSources() {
+    }
+
+    /**
+     * The source returned by perThread; it has no state of its own.
+     */
+    private static final RandomSource PER_THREAD = new RandomSource() {
+
+        @Override
+        public double nextDouble() {
+            return ThreadLocalRandom.current().nextDouble();
+        }
+
+        @Override
+        public long nextLong() {
+            return ThreadLocalRandom.current().nextLong();
+        }
+
+    };
+
+    /**
+     * Returns a source backed by the calling thread's ThreadLocalRandom.
+     *
+     * @return the per-thread source
+     * @ensures [perThread draws from a different stream on each thread]
+     */
+    public static RandomSource perThread() {
+        return PER_THREAD;
+    }
+
+    /**
+     * Returns a reproducible source: each thread that uses it gets its own
+     * SplittableRandom, split from one seeded with {@code seed} the first
+     * time that thread draws. A single thread therefore sees the same
+     * sequence for the same seed on every run, which makes tests that depend
+     * on random choices repeatable.
+     *
+     * @param seed
+     *            the seed
+     * @return the seeded source
+     * @ensures <pre>
+     * [the sequence drawn by the first thread to use seeded is determined by
+     *  seed, and each later thread draws from its own independent stream]
+     * </pre>
+     */
+    public static RandomSource seeded(long seed) {
+        return new SeededRandomSource(seed);
+    }
+
+    /**
+     * Reproducible source; see {@link RandomSources#seeded(long)}.
+     */
+    private static final class SeededRandomSource implements RandomSource {
+
+        /**
+         * Generator every per-thread stream is split from; guarded by itself.
+         */
+        private final SplittableRandom root;
+
+        /**
+         * Each thread's stream.
+         */
+        private final ThreadLocal<SplittableRandom> streams;
+
+        /**
+         * Constructor.
+         *
+         * @param seed
+         *            the seed
+         */
+        SeededRandomSource(long seed) {
+            this.root = new SplittableRandom(seed);
+            this.streams = ThreadLocal.withInitial(this::split);
+        }
+
+        /**
+         * Returns a new stream split from the root.
+         *
+         * @return the new stream
+         */
+        private SplittableRandom split() {
+            synchronized (this.root) {
+                return this.root.split();
+            }
+        }
+
+        @Override
+        public double nextDouble() {
+            return this.streams.get().nextDouble();
+        }
+
+        @Override
+        public long nextLong() {
+            return this.streams.get().nextLong();
+        }
+
+    }
+
+}
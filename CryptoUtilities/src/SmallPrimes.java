@@ -0,0 +1,232 @@
+import java.util.Arrays;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Table of the small primes (all primes below 2^15), built once with a sieve
+ * of Eratosthenes, and residues of NaturalNumbers modulo those primes. Used
+ * to throw out candidates with small factors before any expensive
+ * probabilistic test.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public final class SmallPrimes {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SmallPrimes() {
+    }
+
+    /**
+     * Every prime in the table is less than this bound.
+     */
+    private static final int BOUND = 1 << 15;
+
+    /**
+     * The primes below BOUND, in increasing order.
+     */
+    private static final int[] PRIMES = sieve(BOUND);
+
+    /**
+     * Returns all primes below bound, in increasing order.
+     *
+     * @param bound
+     *            the bound
+     * @return the primes below bound
+     * @requires bound > 2
+     * @ensures sieve = [the primes less than bound, in increasing order]
+     */
+    private static int[] sieve(int bound) {
+        boolean[] composite = new boolean[bound];
+        int count = 0;
+        for (int i = 2; i < bound; i++) {
+            if (!composite[i]) {
+                count++;
+                for (long j = (long) i * i; j < bound; j += i) {
+                    composite[(int) j] = true;
+                }
+            }
+        }
+        int[] primes = new int[count];
+        int k = 0;
+        for (int i = 2; i < bound; i++) {
+            if (!composite[i]) {
+                primes[k] = i;
+                k++;
+            }
+        }
+        return primes;
+    }
+
+    /**
+     * Reports the number of primes in the table.
+     *
+     * @return the number of small primes
+     * @ensures count = |[primes below 2^15]|
+     */
+    public static int count() {
+        return PRIMES.length;
+    }
+
+    /**
+     * Reports the i-th small prime, counting from 0 (so prime(0) = 2).
+     *
+     * @param i
+     *            the index
+     * @return the i-th small prime
+     * @requires 0 <= i < count()
+     * @ensures prime = [the i-th prime, counting from 0]
+     */
+    public static int prime(int i) {
+        assert 0 <= i : "Violation of: 0 <= i";
+        assert i < PRIMES.length : "Violation of: i < count()";
+
+        return PRIMES[i];
+    }
+
+    /**
+     * Reports the largest prime in the table.
+     *
+     * @return the largest small prime
+     * @ensures largest = prime(count() - 1)
+     */
+    public static int largest() {
+        return PRIMES[PRIMES.length - 1];
+    }
+
+    /**
+     * Returns n modulo every prime in the table.
+     *
+     * @param n
+     *            the number
+     * @return array r with r[i] = n mod prime(i)
+     * @ensures <pre>
+     * |residues| = count()  and
+     * for all i: integer where (0 <= i < count())
+     *   (residues[i] = n mod prime(i))
+     * </pre>
+     */
+    public static int[] residues(NaturalNumber n) {
+        /*
+         * Group consecutive primes whose product still fits in an int, so
+         * there is one division of n per group instead of one per prime
+         */
+        int[] result = new int[PRIMES.length];
+        int start = 0;
+        while (start < PRIMES.length) {
+            long product = PRIMES[start];
+            int end = start + 1;
+            while (end < PRIMES.length
+                    && product * PRIMES[end] <= Integer.MAX_VALUE) {
+                product *= PRIMES[end];
+                end++;
+            }
+            NaturalNumber quotient = n.newInstance();
+            quotient.copyFrom(n);
+            NaturalNumber divisor = n.newInstance();
+            divisor.setFromInt((int) product);
+            int remainder = quotient.divide(divisor).toInt();
+            for (int i = start; i < end; i++) {
+                result[i] = remainder % PRIMES[i];
+            }
+            start = end;
+        }
+        return result;
+    }
+
+    /**
+     * Marks which of the odd numbers m, m + 2, ..., m + 2(|composite| - 1)
+     * have an odd small prime factor, given the residues of m.
+     *
+     * @param residues
+     *            m mod prime(i) for each i, as returned by residues(m)
+     * @param composite
+     *            the window to mark
+     * @replaces composite
+     * @requires <pre>
+     * m is odd and m > largest()  and
+     * for all i: integer where (0 <= i < count())
+     *   (residues[i] = m mod prime(i))
+     * </pre>
+     * @ensures <pre>
+     * for all j: integer where (0 <= j < |composite|)
+     *   (composite[j] =
+     *     [m + 2j has a factor prime(i) for some 0 < i < count()])
+     * </pre>
+     */
+    public static void sieveOddWindow(int[] residues, boolean[] composite) {
+        Arrays.fill(composite, false);
+        markWindow(residues, 1, composite);
+    }
+
+    /**
+     * Marks which of the numbers m, m + 2^k, ..., m + 2^k(|composite| - 1)
+     * have an odd small prime factor, given the residues of m, leaving marks
+     * already in composite in place. Marking the same window from the
+     * residues of two related numbers (say q and 2q + 1, with steps 2 and 4)
+     * leaves unmarked only the positions where neither has a small factor.
+     *
+     * @param residues
+     *            m mod prime(i) for each i, as returned by residues(m)
+     * @param k
+     *            the step is 2^k
+     * @param composite
+     *            the window to mark
+     * @updates composite
+     * @requires <pre>
+     * m > largest()  and  0 <= k < 31  and
+     * for all i: integer where (0 <= i < count())
+     *   (residues[i] = m mod prime(i))
+     * </pre>
+     * @ensures <pre>
+     * for all j: integer where (0 <= j < |composite|)
+     *   (composite[j] = #composite[j] or
+     *     [m + 2^k * j has a factor prime(i) for some 0 < i < count()])
+     * </pre>
+     */
+    public static void markWindow(int[] residues, int k, boolean[] composite) {
+        assert 0 <= k : "Violation of: 0 <= k";
+        assert k < Integer.SIZE - 1 : "Violation of: k < 31";
+
+        for (int i = 1; i < PRIMES.length; i++) {
+            /*
+             * m + 2^k j = 0 (mod p) for j = -m / 2^k = (p - r) * h^k (mod p),
+             * where h = (p + 1) / 2 is the inverse of 2 modulo p
+             */
+            int p = PRIMES[i];
+            long inverse = 1;
+            for (int e = 0; e < k; e++) {
+                inverse = inverse * ((p + 1) / 2) % p;
+            }
+            long first = (p - residues[i]) % p * inverse % p;
+            for (long j = first; j < composite.length; j += p) {
+                composite[(int) j] = true;
+            }
+        }
+    }
+
+    /**
+     * Updates residues of m to residues of m + delta.
+     *
+     * @param residues
+     *            m mod prime(i) for each i
+     * @param delta
+     *            the amount m grows by
+     * @updates residues
+     * @requires delta >= 0
+     * @ensures <pre>
+     * for all i: integer where (0 <= i < count())
+     *   (residues[i] = (#residues[i] + delta) mod prime(i))
+     * </pre>
+     */
+    public static void advance(int[] residues, int delta) {
+        assert delta >= 0 : "Violation of: delta >= 0";
+
+        for (int i = 0; i < PRIMES.length; i++) {
+            residues[i] = (int) ((residues[i] + (long) delta) % PRIMES[i]);
+        }
+    }
+
+}
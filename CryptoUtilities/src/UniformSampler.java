@@ -0,0 +1,151 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Draws numbers uniformly distributed in [0, n] for a fixed n, by rejection
+ * sampling over bits: each draw fills bitLength(n) random bits, 30 at a time,
+ * and the whole draw is retried only if it comes out greater than n. Since
+ * n >= 2^(bitLength(n) - 1), a draw is accepted with probability more than
+ * 1/2, so fewer than two draws are needed on average.
+ *
+ * The bit length of n is found once, when the sampler is built, so a sampler
+ * should be kept and reused when many numbers are drawn below the same bound
+ * (e.g., the witnesses of isPrime2).
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public final class UniformSampler {
+
+    /**
+     * Number of random bits appended to a draw at a time; 2^CHUNK_BITS fits
+     * in an int, and two chunks fit in one random long.
+     */
+    private static final int CHUNK_BITS = 30;
+
+    /**
+     * Number of bits in a long.
+     */
+    private static final int BITS_IN_LONG = 64;
+
+    /**
+     * The top end n of the interval.
+     */
+    private final NaturalNumber bound;
+
+    /**
+     * 2^CHUNK_BITS, the same implementation as bound.
+     */
+    private final NaturalNumber radix;
+
+    /**
+     * Number of bits of bound.
+     */
+    private final int bits;
+
+    /**
+     * Constructor.
+     *
+     * @param n
+     *            top end of the interval, not modified
+     * @requires n > 0
+     * @ensures [this draws uniformly from [0, n]]
+     */
+    public UniformSampler(NaturalNumber n) {
+        assert !n.isZero() : "Violation of: n > 0";
+
+        this.bound = CryptoUtilities.copyOf(n);
+        this.radix = CryptoUtilities.newNaturalNumber(n, 1 << CHUNK_BITS);
+        this.bits = bitLength(n);
+    }
+
+    /**
+     * Reports the number of bits of n.
+     *
+     * @param n
+     *            the number, not modified
+     * @return the bit length of n
+     * @requires n > 0
+     * @ensures 2^(bitLength - 1) <= n < 2^bitLength
+     */
+    public static int bitLength(NaturalNumber n) {
+        assert !n.isZero() : "Violation of: n > 0";
+
+        NaturalNumber high = CryptoUtilities.copyOf(n);
+        NaturalNumber radix = CryptoUtilities.newNaturalNumber(n,
+                1 << CHUNK_BITS);
+        int result = 0;
+        while (high.compareTo(radix) >= 0) {
+            high.divide(radix);
+            result += CHUNK_BITS;
+        }
+        return result + Integer.SIZE - Integer.numberOfLeadingZeros(
+                high.toInt());
+    }
+
+    /**
+     * Reports the number of bits of the top end of the interval.
+     *
+     * @return the bit length of n
+     * @ensures 2^(bitLength - 1) <= n < 2^bitLength
+     */
+    public int bitLength() {
+        return this.bits;
+    }
+
+    /**
+     * Returns a new number uniformly distributed in [0, n], of the same
+     * implementation as n.
+     *
+     * @param source
+     *            the source of random bits
+     * @return the random number
+     * @ensures 0 <= next <= n and [next is uniformly distributed]
+     */
+    public NaturalNumber next(RandomSource source) {
+        NaturalNumber result = this.bound.newInstance();
+        this.next(result, source);
+        return result;
+    }
+
+    /**
+     * Replaces result by a number uniformly distributed in [0, n].
+     *
+     * @param result
+     *            the number to replace
+     * @param source
+     *            the source of random bits
+     * @replaces result
+     * @ensures 0 <= result <= n and [result is uniformly distributed]
+     */
+    public void next(NaturalNumber result, RandomSource source) {
+        assert source != null : "Violation of: source is not null";
+
+        /*
+         * The first chunk holds the leftover high bits, so the draw is
+         * uniform over [0, 2^bits); each random long supplies two chunks
+         */
+        final int mask = (1 << CHUNK_BITS) - 1;
+        int topBits = this.bits % CHUNK_BITS;
+        if (topBits == 0) {
+            topBits = CHUNK_BITS;
+        }
+        NaturalNumber chunk = result.newInstance();
+        do {
+            long word = source.nextLong();
+            result.setFromInt((int) (word >>> (BITS_IN_LONG - topBits)));
+            boolean wordHasChunk = false;
+            for (int remaining = this.bits - topBits; remaining > 0;
+                    remaining -= CHUNK_BITS) {
+                if (!wordHasChunk) {
+                    word = source.nextLong();
+                }
+                result.multiply(this.radix);
+                chunk.setFromInt((int) word & mask);
+                result.add(chunk);
+                word >>>= CHUNK_BITS;
+                wordHasChunk = !wordHasChunk;
+            }
+        } while (result.compareTo(this.bound) > 0);
+    }
+
+}
@@ -0,0 +1,102 @@
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * One worker of the parallel strong test in
+ * {@code CryptoUtilities.isPrime2(n, rounds, source, pool)}.
+ *
+ * Each worker owns everything it touches: its own copy of n, its own
+ * Montgomery context (with its scratch registers), its own decomposition
+ * n - 1 = d * 2^s and its own witness register, and it draws witnesses from
+ * a source of its own, so its witnesses do not depend on which thread runs
+ * it. The only shared state is a flag raised by the first worker to find a
+ * witness; every worker checks it before each round, so the remaining rounds
+ * are abandoned as soon as n is known to be composite.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+final class WitnessSearch extends RecursiveAction {
+
+    /**
+     * Serialization id (RecursiveAction is Serializable).
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Useful constant, not a magic number: 4.
+     */
+    private static final int FOUR = 4;
+
+    /**
+     * The number being tested; owned by this worker.
+     */
+    private final NaturalNumber n;
+
+    /**
+     * Number of rounds this worker runs, unless a witness turns up first.
+     */
+    private final int rounds;
+
+    /**
+     * Source of random witnesses.
+     */
+    private final transient RandomSource source;
+
+    /**
+     * Raised once any worker has found a witness.
+     */
+    private final AtomicBoolean witnessed;
+
+    /**
+     * Constructor.
+     *
+     * @param n
+     *            the number to test, owned by this worker from now on
+     * @param rounds
+     *            number of rounds to run
+     * @param source
+     *            source of random witnesses, used by this worker only
+     * @param witnessed
+     *            flag raised by the first worker to find a witness
+     * @requires <pre>
+     * n > 4  and  n is odd  and  MontgomeryContext.canHandle(n)  and
+     * rounds > 0  and
+     * [n is not shared with any other thread]
+     * </pre>
+     */
+    WitnessSearch(NaturalNumber n, int rounds, RandomSource source,
+            AtomicBoolean witnessed) {
+        this.n = n;
+        this.rounds = rounds;
+        this.source = source;
+        this.witnessed = witnessed;
+    }
+
+    @Override
+    protected void compute() {
+        MontgomeryContext context = new MontgomeryContext(this.n);
+        NaturalNumber d = CryptoUtilities.copyOf(this.n);
+        d.decrement();
+        int s = CryptoUtilities.removeFactorsOfTwo(d);
+        NaturalNumber range = CryptoUtilities.copyOf(this.n);
+        range.subtract(CryptoUtilities.newNaturalNumber(this.n, FOUR));
+        UniformSampler sampler = new UniformSampler(range);
+        NaturalNumber witness = this.n.newInstance();
+        for (int i = 0; i < this.rounds && !this.witnessed.get(); i++) {
+            /*
+             * Witness in [2, n - 2]
+             */
+            sampler.next(witness, this.source);
+            witness.increment();
+            witness.increment();
+            if (CryptoUtilities.isStrongWitnessToCompositeness(witness, d, s,
+                    context)) {
+                this.witnessed.set(true);
+            }
+        }
+    }
+
+}
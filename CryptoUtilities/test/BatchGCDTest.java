@@ -0,0 +1,130 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * @author Charles Sirichoktanasup
+ *
+ */
+public class BatchGCDTest {
+
+    /**
+     * Returns the list of the given moduli.
+     *
+     * @param moduli
+     *            the moduli, in decimal
+     * @return the list
+     */
+    private static List<NaturalNumber> list(String... moduli) {
+        List<NaturalNumber> result = new ArrayList<>();
+        for (String m : moduli) {
+            result.add(new NaturalNumber2(m));
+        }
+        return result;
+    }
+
+    /**
+     * Returns gcd(X_j, product of the others) for every j, one pairwise
+     * reduceToGCD at a time.
+     *
+     * @param moduli
+     *            the moduli
+     * @return the GCDs
+     */
+    private static List<NaturalNumber> pairwise(List<NaturalNumber> moduli) {
+        List<NaturalNumber> result = new ArrayList<>();
+        for (int j = 0; j < moduli.size(); j++) {
+            NaturalNumber product = new NaturalNumber2(1);
+            for (int i = 0; i < moduli.size(); i++) {
+                if (i != j) {
+                    product.multiply(moduli.get(i));
+                }
+            }
+            NaturalNumber g = new NaturalNumber2(moduli.get(j));
+            CryptoUtilities.reduceToGCD(g, product);
+            result.add(g);
+        }
+        return result;
+    }
+
+    /**
+     * Tests gcds for no moduli (boundary).
+     */
+    @Test
+    public void testGcdsforEmpty() {
+        List<NaturalNumber> moduli = list();
+        assertEquals(0, BatchGCD.gcds(moduli).size());
+    }
+
+    /**
+     * Tests gcds for one modulus (boundary).
+     */
+    @Test
+    public void testGcdsfor10403() {
+        List<NaturalNumber> moduli = list("10403");
+        assertEquals(list("1"), BatchGCD.gcds(moduli));
+        assertEquals(list("10403"), moduli);
+    }
+
+    /**
+     * Tests gcds for six moduli, four of which share a prime with another
+     * (routine).
+     */
+    @Test
+    public void testGcdsforSixModuli() {
+        List<NaturalNumber> moduli = list("10403", "11663", "11413", "16637",
+                "19043", "15943");
+        List<NaturalNumber> expected = list("101", "107", "101", "1", "1",
+                "107");
+        assertEquals(expected, BatchGCD.gcds(moduli));
+        assertEquals(list("10403", "11663", "11413", "16637", "19043",
+                "15943"), moduli);
+    }
+
+    /**
+     * Tests gcds for a repeated modulus, whose GCD is the whole modulus
+     * (boundary).
+     */
+    @Test
+    public void testGcdsforRepeatedModulus() {
+        List<NaturalNumber> moduli = list("10403", "16637", "10403");
+        assertEquals(list("10403", "1", "10403"), BatchGCD.gcds(moduli));
+    }
+
+    /**
+     * Tests gcds on a pool against pairwise GCDs for 37 random 64-bit moduli
+     * (challenging).
+     */
+    @Test
+    public void testGcdsfor37RandomModuliOnPool() {
+        final int count = 37;
+        final int threads = 4;
+        final long seed = 2221;
+        final int bits = 64;
+        NaturalNumber top = new NaturalNumber2(2);
+        top.power(bits);
+        UniformSampler sampler = new UniformSampler(top);
+        RandomSource source = RandomSources.seeded(seed);
+        List<NaturalNumber> moduli = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            NaturalNumber m = sampler.next(source);
+            m.increment();
+            moduli.add(m);
+        }
+        List<NaturalNumber> expected = pairwise(moduli);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<NaturalNumber> sequential = BatchGCD.gcds(moduli);
+        List<NaturalNumber> parallel = BatchGCD.gcds(moduli, pool);
+        pool.shutdown();
+        assertEquals(expected, sequential);
+        assertEquals(expected, parallel);
+    }
+
+}
@@ -0,0 +1,247 @@
+import java.lang.management.ManagementFactory;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Throughput benchmark for CryptoUtilities at key-sized operands.
+ *
+ * For each bit size, operands are drawn from a seeded source, so every run
+ * measures the same numbers. Each operation is run for a warm-up period, then
+ * for a measurement period, and the benchmark reports operations per second
+ * and bytes allocated per operation (from the thread allocation counter, when
+ * the JVM provides one). Operations that update their arguments work on a
+ * fresh copy each time, and that copy is included in the measurement.
+ *
+ * Usage: {@code java CryptoUtilitiesBenchmark [NaturalNumber3] [bits ...]};
+ * the bit sizes default to 64, 256, 512, 1024 and 2048, and operands are
+ * NaturalNumber2 unless NaturalNumber3 is named.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public final class CryptoUtilitiesBenchmark {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private CryptoUtilitiesBenchmark() {
+    }
+
+    /**
+     * Bit sizes measured when none are given.
+     */
+    private static final int[] DEFAULT_BITS = { 64, 256, 512, 1024, 2048 };
+
+    /**
+     * Seed of the source operands are drawn from.
+     */
+    private static final long SEED = 2221;
+
+    /**
+     * Warm-up time per operation, in nanoseconds.
+     */
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+
+    /**
+     * Measurement time per operation, in nanoseconds.
+     */
+    private static final long MEASURE_NANOS = 3_000_000_000L;
+
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Last result of each operation, kept so the work cannot be optimized
+     * away.
+     */
+    private static volatile Object sink;
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread, or
+     * -1 if the JVM does not count them.
+     *
+     * @return bytes allocated by the current thread
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory
+                .getThreadMXBean();
+        long result = -1;
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            result = ((com.sun.management.ThreadMXBean) bean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return result;
+    }
+
+    /**
+     * Measures op and reports the result on out.
+     *
+     * @param out
+     *            the output stream
+     * @param name
+     *            name of the operation
+     * @param bits
+     *            bit size of the operands
+     * @param op
+     *            the operation
+     * @updates out.content
+     * @requires out.is_open
+     * @ensures out.content = #out.content * [one line of results for op]
+     */
+    private static void measure(SimpleWriter out, String name, int bits,
+            Runnable op) {
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < WARMUP_NANOS) {
+            op.run();
+        }
+        long allocatedBefore = allocatedBytes();
+        long ops = 0;
+        long elapsed = 0;
+        start = System.nanoTime();
+        while (elapsed < MEASURE_NANOS) {
+            op.run();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+        double opsPerSecond = ops * NANOS_PER_SECOND / elapsed;
+        String bytesPerOp = "n/a";
+        if (allocatedBefore >= 0) {
+            bytesPerOp = Long.toString(allocated / ops);
+        }
+        out.println(String.format("%-24s %5d %14.3f %14s", name, bits,
+                opsPerSecond, bytesPerOp));
+    }
+
+    /**
+     * Returns a number with exactly the given number of bits, drawn from
+     * source, of the same implementation as like.
+     *
+     * @param like
+     *            number whose implementation to use
+     * @param bits
+     *            the bit length
+     * @param source
+     *            the source of randomness
+     * @return the random number
+     * @requires bits > 1
+     * @ensures 2^(bits - 1) <= randomOperand < 2^bits
+     */
+    private static NaturalNumber randomOperand(NaturalNumber like, int bits,
+            RandomSource source) {
+        NaturalNumber half = like.newInstance();
+        half.setFromInt(2);
+        half.power(bits - 1);
+        NaturalNumber top = CryptoUtilities.copyOf(half);
+        top.decrement();
+        NaturalNumber result = new UniformSampler(top).next(source);
+        result.add(half);
+        return result;
+    }
+
+    /**
+     * Runs every operation at the given bit size.
+     *
+     * @param out
+     *            the output stream
+     * @param like
+     *            number whose implementation to use
+     * @param bits
+     *            the bit size
+     * @updates out.content
+     * @requires out.is_open and bits > 1
+     * @ensures out.content = #out.content * [the results at this size]
+     */
+    private static void runAll(SimpleWriter out, NaturalNumber like,
+            int bits) {
+        RandomSource source = RandomSources.seeded(SEED + bits);
+        NaturalNumber a = randomOperand(like, bits, source);
+        NaturalNumber b = randomOperand(like, bits, source);
+        NaturalNumber modulus = randomOperand(like, bits, source);
+        if (CryptoUtilities.isEven(modulus)) {
+            modulus.increment();
+        }
+        NaturalNumber prime = CryptoUtilities.copyOf(a);
+        CryptoUtilities.generateNextLikelyPrime(prime);
+
+        measure(out, "randomNumber", bits, () -> {
+            sink = CryptoUtilities.randomNumber(a, source);
+        });
+        for (GcdStrategy strategy : GcdStrategy.values()) {
+            measure(out, "reduceToGCD " + strategy, bits, () -> {
+                NaturalNumber n = CryptoUtilities.copyOf(a);
+                NaturalNumber m = CryptoUtilities.copyOf(b);
+                CryptoUtilities.reduceToGCD(n, m, strategy);
+                sink = n;
+            });
+        }
+        measure(out, "powerMod", bits, () -> {
+            NaturalNumber n = CryptoUtilities.copyOf(a);
+            CryptoUtilities.powerMod(n, b, modulus);
+            sink = n;
+        });
+        PowerModWorkspace workspace = new PowerModWorkspace(modulus);
+        measure(out, "powerMod window=1", bits, () -> {
+            NaturalNumber n = CryptoUtilities.copyOf(a);
+            CryptoUtilities.powerMod(n, b, workspace, 1);
+            sink = n;
+        });
+        measure(out, "powerMod window=auto", bits, () -> {
+            NaturalNumber n = CryptoUtilities.copyOf(a);
+            CryptoUtilities.powerMod(n, b, workspace, 0);
+            sink = n;
+        });
+        FixedBasePowerMod fixed = new FixedBasePowerMod(a, modulus);
+        measure(out, "powerMod fixed base", bits, () -> {
+            NaturalNumber n = like.newInstance();
+            fixed.powerMod(n, b);
+            sink = n;
+        });
+        measure(out, "isPrime1", bits, () -> {
+            sink = CryptoUtilities.isPrime1(prime);
+        });
+        measure(out, "isPrime2", bits, () -> {
+            sink = CryptoUtilities.isPrime2(prime);
+        });
+        measure(out, "generateNextLikelyPrime", bits, () -> {
+            NaturalNumber n = CryptoUtilities.copyOf(a);
+            CryptoUtilities.generateNextLikelyPrime(n);
+            sink = n;
+        });
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            optionally NaturalNumber3, then the bit sizes to measure
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        NaturalNumber like = new NaturalNumber2();
+        int first = 0;
+        if (args.length > 0 && args[0].equals("NaturalNumber3")) {
+            like = new NaturalNumber3();
+            first = 1;
+        }
+        int[] sizes = DEFAULT_BITS;
+        if (args.length > first) {
+            sizes = new int[args.length - first];
+            for (int i = first; i < args.length; i++) {
+                sizes[i - first] = Integer.parseInt(args[i]);
+            }
+        }
+        out.println(String.format("%-24s %5s %14s %14s", "operation", "bits",
+                "ops/s", "bytes/op"));
+        for (int bits : sizes) {
+            runAll(out, like, bits);
+        }
+        out.close();
+    }
+
+}
@@ -1,5 +1,7 @@
 import static org.junit.Assert.assertEquals;
 
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.Test;
 
 import components.naturalnumber.NaturalNumber;
@@ -737,4 +739,785 @@ public class CryptoUtilitiesTest {
         assertEquals(nExpected, n);
     }
 
+    /*
+     * Tests of removeFactorsOfTwo
+     */
+
+    /**
+     * Tests removeFactorsOfTwo for 1 (boundary).
+     */
+    @Test
+    public void removeFactorsOfTwofor1() {
+        NaturalNumber n = new NaturalNumber2(1);
+        NaturalNumber nExpected = new NaturalNumber2(1);
+        int s = CryptoUtilities.removeFactorsOfTwo(n);
+        assertEquals(0, s);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests removeFactorsOfTwo for 3 * 2^40 (challenging).
+     */
+    @Test
+    public void removeFactorsOfTwofor3298534883328() {
+        final int sExpected = 40;
+        NaturalNumber n = new NaturalNumber2("3298534883328");
+        NaturalNumber nExpected = new NaturalNumber2(3);
+        int s = CryptoUtilities.removeFactorsOfTwo(n);
+        assertEquals(sExpected, s);
+        assertEquals(nExpected, n);
+    }
+
+    /*
+     * Tests of isStrongWitnessToCompositeness
+     */
+
+    /**
+     * Tests isStrongWitnessToCompositeness for w = 2 and the strong
+     * pseudoprime n = 2047 (not a witness).
+     */
+    @Test
+    public void isStrongWitnessToCompositenessfor2and2047() {
+        final int nInt = 2047;
+        final int dInt = 1023;
+        NaturalNumber w = new NaturalNumber2(2);
+        NaturalNumber d = new NaturalNumber2(dInt);
+        MontgomeryContext context = new MontgomeryContext(
+                new NaturalNumber2(nInt));
+        boolean isWitness = CryptoUtilities.isStrongWitnessToCompositeness(w,
+                d, 1, context);
+        assertEquals(false, isWitness);
+    }
+
+    /**
+     * Tests isStrongWitnessToCompositeness for w = 3 and n = 2047 (witness).
+     */
+    @Test
+    public void isStrongWitnessToCompositenessfor3and2047() {
+        final int nInt = 2047;
+        final int dInt = 1023;
+        final int wInt = 3;
+        NaturalNumber w = new NaturalNumber2(wInt);
+        NaturalNumber d = new NaturalNumber2(dInt);
+        MontgomeryContext context = new MontgomeryContext(
+                new NaturalNumber2(nInt));
+        boolean isWitness = CryptoUtilities.isStrongWitnessToCompositeness(w,
+                d, 1, context);
+        assertEquals(true, isWitness);
+    }
+
+    /**
+     * Tests isStrongWitnessToCompositeness for w = 2 and the Carmichael number
+     * n = 561 = 35 * 2^4 + 1 (witness).
+     */
+    @Test
+    public void isStrongWitnessToCompositenessfor2and561() {
+        final int nInt = 561;
+        final int dInt = 35;
+        final int s = 4;
+        NaturalNumber w = new NaturalNumber2(2);
+        NaturalNumber d = new NaturalNumber2(dInt);
+        MontgomeryContext context = new MontgomeryContext(
+                new NaturalNumber2(nInt));
+        boolean isWitness = CryptoUtilities.isStrongWitnessToCompositeness(w,
+                d, s, context);
+        assertEquals(true, isWitness);
+    }
+
+    /*
+     * Tests of isPrime2 with a round count
+     */
+
+    /**
+     * Tests isPrime2 for the strong pseudoprime to bases 2 through 37
+     * 3825123056546413051 (challenging).
+     */
+    @Test
+    public void isPrime2for3825123056546413051() {
+        NaturalNumber n = new NaturalNumber2("3825123056546413051");
+        boolean isPrime = CryptoUtilities.isPrime2(n, 1);
+        assertEquals(false, isPrime);
+    }
+
+    /**
+     * Tests isPrime2 for the prime 2^89 - 1 with 5 rounds (challenging).
+     */
+    @Test
+    public void isPrime2for618970019642690137449562111() {
+        final int rounds = 5;
+        NaturalNumber n = new NaturalNumber2("618970019642690137449562111");
+        boolean isPrime = CryptoUtilities.isPrime2(n, rounds);
+        assertEquals(true, isPrime);
+    }
+
+    /*
+     * Tests of isPrimeBPSW
+     */
+
+    /**
+     * Tests isPrimeBPSW for 2 (boundary).
+     */
+    @Test
+    public void isPrimeBPSWfor2() {
+        NaturalNumber n = new NaturalNumber2(2);
+        boolean isPrime = CryptoUtilities.isPrimeBPSW(n);
+        assertEquals(true, isPrime);
+    }
+
+    /**
+     * Tests isPrimeBPSW for the prime 2^89 - 1 (challenging).
+     */
+    @Test
+    public void isPrimeBPSWfor618970019642690137449562111() {
+        NaturalNumber n = new NaturalNumber2("618970019642690137449562111");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "618970019642690137449562111");
+        boolean isPrime = CryptoUtilities.isPrimeBPSW(n);
+        assertEquals(true, isPrime);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests isPrimeBPSW for the strong pseudoprime to bases 2 through 41
+     * 318665857834031151167461 (challenging).
+     */
+    @Test
+    public void isPrimeBPSWfor318665857834031151167461() {
+        NaturalNumber n = new NaturalNumber2("318665857834031151167461");
+        boolean isPrime = CryptoUtilities.isPrimeBPSW(n);
+        assertEquals(false, isPrime);
+    }
+
+    /**
+     * Tests isPrimeBPSW for the perfect square 1000000007^2 (no discriminant
+     * exists).
+     */
+    @Test
+    public void isPrimeBPSWfor1000000014000000049() {
+        NaturalNumber n = new NaturalNumber2("1000000014000000049");
+        boolean isPrime = CryptoUtilities.isPrimeBPSW(n);
+        assertEquals(false, isPrime);
+    }
+
+    /*
+     * Tests of generateNextLikelyPrime (sieved)
+     */
+
+    /**
+     * Tests generateNextLikelyPrime for 10^30, past the small prime table
+     * (challenging).
+     */
+    @Test
+    public void generateNextLikelyPrimefor10to30() {
+        NaturalNumber n = new NaturalNumber2(
+                "1000000000000000000000000000000");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "1000000000000000000000000000057");
+        CryptoUtilities.generateNextLikelyPrime(n);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests generateNextLikelyPrime for 32749, the largest small prime
+     * (boundary).
+     */
+    @Test
+    public void generateNextLikelyPrimefor32749() {
+        final int nInt = 32749;
+        final int nExpectedInt = 32771;
+        NaturalNumber n = new NaturalNumber2(nInt);
+        NaturalNumber nExpected = new NaturalNumber2(nExpectedInt);
+        CryptoUtilities.generateNextLikelyPrime(n);
+        assertEquals(nExpected, n);
+    }
+
+    /*
+     * Tests of generateNextLikelyPrime on a pool
+     */
+
+    /**
+     * Tests generateNextLikelyPrime on a pool of 4 threads for 10^30
+     * (challenging).
+     */
+    @Test
+    public void generateNextLikelyPrimefor10to30on4Threads() {
+        final int threads = 4;
+        NaturalNumber n = new NaturalNumber2(
+                "1000000000000000000000000000000");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "1000000000000000000000000000057");
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        CryptoUtilities.generateNextLikelyPrime(n, pool);
+        pool.shutdown();
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests generateNextLikelyPrime on pools of 1, 2, 3, and 8 threads for
+     * 2^127, giving the same result as the sequential version (challenging).
+     */
+    @Test
+    public void generateNextLikelyPrimefor2to127onSeveralPools() {
+        final int[] threads = { 1, 2, 3, 8 };
+        final String start = "170141183460469231731687303715884105728";
+        NaturalNumber nExpected = new NaturalNumber2(start);
+        CryptoUtilities.generateNextLikelyPrime(nExpected);
+        for (int t : threads) {
+            NaturalNumber n = new NaturalNumber2(start);
+            ForkJoinPool pool = new ForkJoinPool(t);
+            CryptoUtilities.generateNextLikelyPrime(n, pool);
+            pool.shutdown();
+            assertEquals(nExpected, n);
+        }
+    }
+
+    /**
+     * Tests generateNextLikelyPrime on a pool of 8 threads for the
+     * NaturalNumber2 10^100, several times over, so many workers start at
+     * once from the same number (challenging).
+     */
+    @Test
+    public void generateNextLikelyPrimefor10to100on8ThreadsNaturalNumber2() {
+        final int threads = 8;
+        final int runs = 5;
+        final int exponent = 100;
+        final int gap = 267;
+        NaturalNumber start = new NaturalNumber2(1);
+        for (int i = 0; i < exponent; i++) {
+            start.multiplyBy10(0);
+        }
+        NaturalNumber nExpected = new NaturalNumber2(start);
+        nExpected.add(new NaturalNumber2(gap));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        for (int run = 0; run < runs; run++) {
+            NaturalNumber n = new NaturalNumber2(start);
+            CryptoUtilities.generateNextLikelyPrime(n, pool);
+            assertEquals(nExpected, n);
+        }
+        pool.shutdown();
+    }
+
+    /*
+     * Tests of powerMod with a workspace
+     */
+
+    /**
+     * Tests powerMod with a workspace for n = 3, p = 10^30 + 7, and m = 2^100
+     * (even modulus, reduced by division).
+     */
+    @Test
+    public void testPowerModWorkspaceforn3p10to30plus7m2to100() {
+        final int three = 3;
+        NaturalNumber n = new NaturalNumber2(three);
+        NaturalNumber p = new NaturalNumber2(
+                "1000000000000000000000000000007");
+        NaturalNumber m = new NaturalNumber2(
+                "1267650600228229401496703205376");
+        NaturalNumber pExpected = new NaturalNumber2(
+                "1000000000000000000000000000007");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "397547169680766765803704944779");
+        PowerModWorkspace workspace = new PowerModWorkspace(m);
+        CryptoUtilities.powerMod(n, p, workspace);
+        assertEquals(nExpected, n);
+        assertEquals(pExpected, p);
+    }
+
+    /**
+     * Tests powerMod with one workspace reused for two powers modulo
+     * m = 10^40 + 3 (challenging).
+     */
+    @Test
+    public void testPowerModWorkspaceReusedm10to40plus3() {
+        NaturalNumber m = new NaturalNumber2(
+                "10000000000000000000000000000000000000003");
+        NaturalNumber n1 = new NaturalNumber2("12345678901234567890");
+        NaturalNumber p1 = new NaturalNumber2("98765432109876543210");
+        NaturalNumber n1Expected = new NaturalNumber2(
+                "6386526578429081712417489982537313967574");
+        NaturalNumber n2 = new NaturalNumber2(2);
+        NaturalNumber p2 = new NaturalNumber2(
+                "10000000000000000000000000000000000000002");
+        NaturalNumber n2Expected = new NaturalNumber2(
+                "9922265305547628113502726433412065255411");
+        PowerModWorkspace workspace = new PowerModWorkspace(m);
+        CryptoUtilities.powerMod(n1, p1, workspace);
+        CryptoUtilities.powerMod(n2, p2, workspace);
+        assertEquals(n1Expected, n1);
+        assertEquals(n2Expected, n2);
+    }
+
+    /*
+     * Tests of powerMod with a window
+     */
+
+    /**
+     * Tests powerMod with a workspace and a window of 4 for a 200-bit
+     * exponent (challenging).
+     */
+    @Test
+    public void testPowerModWorkspaceWindow4m10to40plus3() {
+        final int k = 4;
+        NaturalNumber n = new NaturalNumber2("98765432109876543210987654321");
+        NaturalNumber p = new NaturalNumber2(
+                "16069380442589902755419620923411626025222029937827928352"
+                        + "89031");
+        NaturalNumber m = new NaturalNumber2(
+                "10000000000000000000000000000000000000003");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "3575765556707784332854267123026633679983");
+        CryptoUtilities.powerMod(n, p, new PowerModWorkspace(m), k);
+        assertEquals(nExpected, n);
+    }
+
+    /*
+     * Tests of reduceToGCD with a GcdStrategy
+     */
+
+    /**
+     * Tests reduceToGCD with the binary strategy for n = 15116544 and
+     * m = 399679488 (routine).
+     */
+    @Test
+    public void testReduceToGCDBinaryfor15116544and399679488() {
+        final int nInt = 15116544;
+        final int nExpectedInt = 6912;
+        final int mInt = 399679488;
+        NaturalNumber n = new NaturalNumber2(nInt);
+        NaturalNumber nExpected = new NaturalNumber2(nExpectedInt);
+        NaturalNumber m = new NaturalNumber2(mInt);
+        NaturalNumber mExpected = new NaturalNumber2(0);
+        CryptoUtilities.reduceToGCD(n, m, GcdStrategy.BINARY);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+    }
+
+    /**
+     * Tests reduceToGCD with the binary strategy for n = 2^200 * 3^50 * 7 and
+     * m = 2^150 * 3^80 * 11 (challenging).
+     */
+    @Test
+    public void testReduceToGCDBinaryforMultiLimb() {
+        NaturalNumber n = new NaturalNumber2("807532311823307189964693314322"
+                + "5079285642938160326710796886844848216004009113962938368");
+        NaturalNumber m = new NaturalNumber2("232055791817513437812725364567"
+                + "6467220305884678966445267278700666420520710570470539264");
+        NaturalNumber nExpected = new NaturalNumber2("10246182465314481925294"
+                + "86101931556275808450117982966277666337116389376");
+        NaturalNumber mExpected = new NaturalNumber2(0);
+        CryptoUtilities.reduceToGCD(n, m, GcdStrategy.BINARY);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+    }
+
+    /**
+     * Tests reduceToGCD with the Lehmer strategy for n = 2^200 * 3^50 * 7 and
+     * m = 2^150 * 3^80 * 11, as NaturalNumber3 (challenging).
+     */
+    @Test
+    public void testReduceToGCDLehmerforMultiLimb() {
+        NaturalNumber n = new NaturalNumber3("807532311823307189964693314322"
+                + "5079285642938160326710796886844848216004009113962938368");
+        NaturalNumber m = new NaturalNumber3("232055791817513437812725364567"
+                + "6467220305884678966445267278700666420520710570470539264");
+        NaturalNumber nExpected = new NaturalNumber2("10246182465314481925294"
+                + "86101931556275808450117982966277666337116389376");
+        NaturalNumber mExpected = new NaturalNumber2(0);
+        CryptoUtilities.reduceToGCD(n, m, GcdStrategy.LEHMER);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+    }
+
+    /**
+     * Tests reduceToGCD with the Lehmer strategy for n = 3 and m = 0, which
+     * matches reduceToGCD(n, m) (boundary).
+     */
+    @Test
+    public void testReduceToGCDLehmerfor3and0() {
+        final int nInt = 3;
+        NaturalNumber n = new NaturalNumber2(nInt);
+        NaturalNumber nExpected = new NaturalNumber2(0);
+        NaturalNumber m = new NaturalNumber2(0);
+        NaturalNumber mExpected = new NaturalNumber2(0);
+        CryptoUtilities.reduceToGCD(n, m, GcdStrategy.LEHMER);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+    }
+
+    /**
+     * Tests reduceToGCD with the Lehmer strategy for n = 1000003 and
+     * m = 99999999 (routine).
+     */
+    @Test
+    public void testReduceToGCDLehmerfor1000003and99999999() {
+        final int nInt = 1000003;
+        final int mInt = 99999999;
+        NaturalNumber n = new NaturalNumber2(nInt);
+        NaturalNumber nExpected = new NaturalNumber2(1);
+        NaturalNumber m = new NaturalNumber2(mInt);
+        NaturalNumber mExpected = new NaturalNumber2(0);
+        CryptoUtilities.reduceToGCD(n, m, GcdStrategy.LEHMER);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+    }
+
+    /*
+     * Tests of extendedGCD / modInverse
+     */
+
+    /**
+     * Tests extendedGCD for n = 240 and m = 46 (routine).
+     */
+    @Test
+    public void testExtendedGCDfor240and46() {
+        final int nInt = 240;
+        final int mInt = 46;
+        final int xExpectedInt = 14;
+        final int yExpectedInt = 73;
+        NaturalNumber n = new NaturalNumber2(nInt);
+        NaturalNumber m = new NaturalNumber2(mInt);
+        NaturalNumber x = new NaturalNumber2();
+        NaturalNumber y = new NaturalNumber2();
+        NaturalNumber nExpected = new NaturalNumber2(2);
+        NaturalNumber mExpected = new NaturalNumber2(mInt);
+        NaturalNumber xExpected = new NaturalNumber2(xExpectedInt);
+        NaturalNumber yExpected = new NaturalNumber2(yExpectedInt);
+        CryptoUtilities.extendedGCD(n, m, x, y);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+        assertEquals(xExpected, x);
+        assertEquals(yExpected, y);
+    }
+
+    /**
+     * Tests extendedGCD for n = 46 and m = 240, an odd number of steps
+     * (routine).
+     */
+    @Test
+    public void testExtendedGCDfor46and240() {
+        final int nInt = 46;
+        final int mInt = 240;
+        final int xExpectedInt = 47;
+        final int yExpectedInt = 9;
+        NaturalNumber n = new NaturalNumber2(nInt);
+        NaturalNumber m = new NaturalNumber2(mInt);
+        NaturalNumber x = new NaturalNumber2();
+        NaturalNumber y = new NaturalNumber2();
+        NaturalNumber nExpected = new NaturalNumber2(2);
+        NaturalNumber xExpected = new NaturalNumber2(xExpectedInt);
+        NaturalNumber yExpected = new NaturalNumber2(yExpectedInt);
+        CryptoUtilities.extendedGCD(n, m, x, y);
+        assertEquals(nExpected, n);
+        assertEquals(xExpected, x);
+        assertEquals(yExpected, y);
+    }
+
+    /**
+     * Tests extendedGCD for n = 12 and m = 4, where m divides n (boundary).
+     */
+    @Test
+    public void testExtendedGCDfor12and4() {
+        final int nInt = 12;
+        final int mInt = 4;
+        final int yExpectedInt = 2;
+        NaturalNumber n = new NaturalNumber2(nInt);
+        NaturalNumber m = new NaturalNumber2(mInt);
+        NaturalNumber x = new NaturalNumber2();
+        NaturalNumber y = new NaturalNumber2();
+        NaturalNumber nExpected = new NaturalNumber2(mInt);
+        NaturalNumber xExpected = new NaturalNumber2(1);
+        NaturalNumber yExpected = new NaturalNumber2(yExpectedInt);
+        CryptoUtilities.extendedGCD(n, m, x, y);
+        assertEquals(nExpected, n);
+        assertEquals(xExpected, x);
+        assertEquals(yExpected, y);
+    }
+
+    /**
+     * Tests modInverse for n = 17 and m = 3120 (routine).
+     */
+    @Test
+    public void testModInversefor17and3120() {
+        final int nInt = 17;
+        final int mInt = 3120;
+        final int nExpectedInt = 2753;
+        NaturalNumber n = new NaturalNumber2(nInt);
+        NaturalNumber m = new NaturalNumber2(mInt);
+        NaturalNumber nExpected = new NaturalNumber2(nExpectedInt);
+        NaturalNumber mExpected = new NaturalNumber2(mInt);
+        CryptoUtilities.modInverse(n, m);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+    }
+
+    /**
+     * Tests modInverse for e = 65537 and the totient of (2^127 - 1) *
+     * (2^89 - 1) (challenging).
+     */
+    @Test
+    public void testModInversefor65537andLargeTotient() {
+        final int e = 65537;
+        NaturalNumber n = new NaturalNumber2(e);
+        NaturalNumber m = new NaturalNumber2("105312291668557186697918027343"
+                + "388065396718691897889123547643641860");
+        NaturalNumber nExpected = new NaturalNumber2("52724439659078533542050"
+                + "878056119532687363428290303798353933435053");
+        CryptoUtilities.modInverse(n, m);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests modInverse for n = 1 and m = 2 (boundary).
+     */
+    @Test
+    public void testModInversefor1and2() {
+        NaturalNumber n = new NaturalNumber2(1);
+        NaturalNumber m = new NaturalNumber2(2);
+        NaturalNumber nExpected = new NaturalNumber2(1);
+        CryptoUtilities.modInverse(n, m);
+        assertEquals(nExpected, n);
+    }
+
+    /*
+     * Tests of roundsFor and isPrime2 with a round count
+     */
+
+    /**
+     * Tests roundsFor for 1024 and 512 bits at error 2^(-80), and for 2048
+     * bits at error 2^(-100) (routine).
+     */
+    @Test
+    public void testRoundsForStandardSizes() {
+        final int bits512 = 512;
+        final int bits1024 = 1024;
+        final int bits2048 = 2048;
+        final double error80 = Math.pow(2, -80);
+        final double error100 = Math.pow(2, -100);
+        final int three = 3;
+        final int six = 6;
+        assertEquals(three, CryptoUtilities.roundsFor(bits1024, error80));
+        assertEquals(six, CryptoUtilities.roundsFor(bits512, error80));
+        assertEquals(three, CryptoUtilities.roundsFor(bits2048, error100));
+    }
+
+    /**
+     * Tests roundsFor below the average-case range, where the worst-case
+     * count ceil(log4(1 / error)) is used (boundary).
+     */
+    @Test
+    public void testRoundsForSmallNumbers() {
+        final int bits = 20;
+        final double error = Math.pow(2, -60);
+        final int worstCase = 30;
+        final double half = 0.5;
+        assertEquals(worstCase, CryptoUtilities.roundsFor(bits, error));
+        assertEquals(1, CryptoUtilities.roundsFor(bits, half));
+    }
+
+    /**
+     * Tests isPrime2ForError for the prime 2^127 - 1 and the composite
+     * (2^61 - 1)(2^89 - 1) (routine).
+     */
+    @Test
+    public void testIsPrime2ForErrorforMersenne127and61times89() {
+        final double error = Math.pow(2, -80);
+        NaturalNumber prime = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        NaturalNumber composite = new NaturalNumber2(
+                "1427247692705959880439315947500961989719490561");
+        assertEquals(true, CryptoUtilities.isPrime2ForError(prime, error));
+        assertEquals(false,
+                CryptoUtilities.isPrime2ForError(composite, error));
+    }
+
+    /**
+     * Tests that isPrime2 stops at the first witness: a composite above 2^64
+     * draws one witness's worth of randomness, not 30 (challenging).
+     */
+    @Test
+    public void testIsPrime2StopsAtFirstWitness() {
+        final int rounds = 30;
+        final long[] draws = new long[1];
+        RandomSource source = new RandomSource() {
+            private final RandomSource inner = RandomSources.seeded(rounds);
+
+            @Override
+            public double nextDouble() {
+                draws[0]++;
+                return this.inner.nextDouble();
+            }
+
+            @Override
+            public long nextLong() {
+                draws[0]++;
+                return this.inner.nextLong();
+            }
+        };
+        NaturalNumber prime = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        NaturalNumber composite = new NaturalNumber2(
+                "1427247692705959880439315947500961989719490561");
+        assertEquals(true, CryptoUtilities.isPrime2(prime, rounds, source));
+        long primeDraws = draws[0];
+        draws[0] = 0;
+        assertEquals(false,
+                CryptoUtilities.isPrime2(composite, rounds, source));
+        assertEquals(true, draws[0] < primeDraws / 2);
+    }
+
+    /*
+     * Tests of isPrime2 on a pool
+     */
+
+    /**
+     * Tests isPrime2 on a pool for the prime 2^127 - 1 (routine).
+     */
+    @Test
+    public void isPrime2OnPoolforMersenne127() {
+        final int rounds = 30;
+        final int threads = 4;
+        NaturalNumber n = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        boolean isPrime = CryptoUtilities.isPrime2(n, rounds, pool);
+        pool.shutdown();
+        assertEquals(true, isPrime);
+        assertEquals(new NaturalNumber2(
+                "170141183460469231731687303715884105727"), n);
+    }
+
+    /**
+     * Tests isPrime2 on a pool for the composite (2^61 - 1)(2^89 - 1), with
+     * fewer rounds than threads (challenging).
+     */
+    @Test
+    public void isPrime2OnPoolfor61times89() {
+        final int rounds = 3;
+        final int threads = 8;
+        NaturalNumber n = new NaturalNumber2(
+                "1427247692705959880439315947500961989719490561");
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        boolean isPrime = CryptoUtilities.isPrime2(n, rounds, pool);
+        pool.shutdown();
+        assertEquals(false, isPrime);
+    }
+
+    /**
+     * Tests isPrime2 on a pool below 2^64, where it is the exact sequential
+     * test (boundary).
+     */
+    @Test
+    public void isPrime2OnPoolfor3825123056546413051() {
+        final int threads = 4;
+        NaturalNumber n = new NaturalNumber2("3825123056546413051");
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        boolean isPrime = CryptoUtilities.isPrime2(n, 1, pool);
+        pool.shutdown();
+        assertEquals(false, isPrime);
+    }
+
+    /**
+     * Tests isPrime2 on a pool with a seeded source for 2^127 - 1 and the
+     * composite (2^61 - 1)(2^89 - 1): the same seed gives the same answers,
+     * and source is drawn from once per worker, on the calling thread
+     * (routine).
+     */
+    @Test
+    public void isPrime2OnPoolWithSeededSource() {
+        final int rounds = 8;
+        final int threads = 4;
+        final long seed = 2221;
+        final int[] draws = { 0 };
+        RandomSource source = new RandomSource() {
+            private final RandomSource inner = RandomSources.seeded(seed);
+
+            @Override
+            public double nextDouble() {
+                return this.inner.nextDouble();
+            }
+
+            @Override
+            public long nextLong() {
+                draws[0]++;
+                return this.inner.nextLong();
+            }
+        };
+        NaturalNumber prime = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        NaturalNumber composite = new NaturalNumber2(
+                "1427247692705959880439315947500961989719490561");
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        for (int run = 0; run < 2; run++) {
+            assertEquals(true, CryptoUtilities.isPrime2(prime, rounds,
+                    RandomSources.seeded(seed), pool));
+            assertEquals(false, CryptoUtilities.isPrime2(composite, rounds,
+                    RandomSources.seeded(seed), pool));
+        }
+        assertEquals(false,
+                CryptoUtilities.isPrime2(composite, rounds, source, pool));
+        pool.shutdown();
+        assertEquals(threads, draws[0]);
+    }
+
+    /**
+     * Tests generateNextSafePrime for 2, 5, 7, 11 and 23 (boundary).
+     */
+    @Test
+    public void generateNextSafePrimeforSmallNumbers() {
+        final int[] from = { 2, 5, 7, 11, 23 };
+        final int[] expected = { 5, 7, 11, 23, 47 };
+        for (int i = 0; i < from.length; i++) {
+            NaturalNumber n = new NaturalNumber2(from[i]);
+            CryptoUtilities.generateNextSafePrime(n);
+            assertEquals(new NaturalNumber2(expected[i]), n);
+        }
+    }
+
+    /**
+     * Tests generateNextSafePrime for 65498, where q starts at the largest
+     * small prime (boundary).
+     */
+    @Test
+    public void generateNextSafePrimefor65498() {
+        final int nInt = 65498;
+        final int expected = 65543;
+        NaturalNumber n = new NaturalNumber2(nInt);
+        CryptoUtilities.generateNextSafePrime(n);
+        assertEquals(new NaturalNumber2(expected), n);
+    }
+
+    /**
+     * Tests generateNextSafePrime for 10^10 (routine).
+     */
+    @Test
+    public void generateNextSafePrimefor10to10() {
+        NaturalNumber n = new NaturalNumber2("10000000000");
+        CryptoUtilities.generateNextSafePrime(n);
+        assertEquals(new NaturalNumber2("10000000259"), n);
+    }
+
+    /**
+     * Tests generateNextSafePrime for 2^128 (challenging).
+     */
+    @Test
+    public void generateNextSafePrimefor2to128() {
+        NaturalNumber n = new NaturalNumber2(
+                "340282366920938463463374607431768211456");
+        CryptoUtilities.generateNextSafePrime(n);
+        assertEquals(new NaturalNumber2(
+                "340282366920938463463374607431768223907"), n);
+    }
+
+    /**
+     * Tests generateNextSafePrime for 10^40 (challenging).
+     */
+    @Test
+    public void generateNextSafePrimefor10to40() {
+        NaturalNumber n = new NaturalNumber2(
+                "10000000000000000000000000000000000000000");
+        CryptoUtilities.generateNextSafePrime(n);
+        assertEquals(new NaturalNumber2(
+                "10000000000000000000000000000000000017407"), n);
+    }
+
 }
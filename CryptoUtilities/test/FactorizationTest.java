@@ -0,0 +1,120 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * @author Charles Sirichoktanasup
+ *
+ */
+public class FactorizationTest {
+
+    /**
+     * Seed for the rho sequences, so every run factors the same way.
+     */
+    private static final long SEED = 2221;
+
+    /**
+     * Returns the list of the given numbers.
+     *
+     * @param numbers
+     *            the numbers, in decimal
+     * @return the list
+     */
+    private static List<NaturalNumber> list(String... numbers) {
+        List<NaturalNumber> result = new ArrayList<>();
+        for (String s : numbers) {
+            result.add(new NaturalNumber2(s));
+        }
+        return result;
+    }
+
+    /**
+     * Tests factor for 1 (boundary).
+     */
+    @Test
+    public void testFactorfor1() {
+        NaturalNumber n = new NaturalNumber2(1);
+        assertEquals(list(), Factorization.factor(n));
+        assertEquals(new NaturalNumber2(1), n);
+    }
+
+    /**
+     * Tests factor for 2 (boundary).
+     */
+    @Test
+    public void testFactorfor2() {
+        NaturalNumber n = new NaturalNumber2(2);
+        assertEquals(list("2"), Factorization.factor(n));
+    }
+
+    /**
+     * Tests factor for 561 = 3 * 11 * 17, a Carmichael number (routine).
+     */
+    @Test
+    public void testFactorfor561() {
+        final int nInt = 561;
+        NaturalNumber n = new NaturalNumber2(nInt);
+        assertEquals(list("3", "11", "17"), Factorization.factor(n));
+        assertEquals(new NaturalNumber2(nInt), n);
+    }
+
+    /**
+     * Tests factor for 2^10 * 3^5 * 32749, all small primes (routine).
+     */
+    @Test
+    public void testFactorfor8148999168() {
+        NaturalNumber n = new NaturalNumber2("8148999168");
+        List<NaturalNumber> expected = list("2", "2", "2", "2", "2", "2", "2",
+                "2", "2", "2", "3", "3", "3", "3", "3", "32749");
+        assertEquals(expected, Factorization.factor(n));
+    }
+
+    /**
+     * Tests factor for 1000003^2, the square of a prime above 2^15
+     * (challenging).
+     */
+    @Test
+    public void testFactorfor1000003Squared() {
+        NaturalNumber n = new NaturalNumber2("1000006000009");
+        assertEquals(list("1000003", "1000003"),
+                Factorization.factor(n, RandomSources.seeded(SEED)));
+    }
+
+    /**
+     * Tests factor for 1000000007 * 998244353 (challenging).
+     */
+    @Test
+    public void testFactorfor998244359987710471() {
+        NaturalNumber n = new NaturalNumber2("998244359987710471");
+        assertEquals(list("998244353", "1000000007"),
+                Factorization.factor(n, RandomSources.seeded(SEED)));
+    }
+
+    /**
+     * Tests factor for 10^20 + 1 = 73 * 137 * 1676321 * 5964848081
+     * (challenging).
+     */
+    @Test
+    public void testFactorfor10to20Plus1() {
+        NaturalNumber n = new NaturalNumber2("100000000000000000001");
+        assertEquals(list("73", "137", "1676321", "5964848081"),
+                Factorization.factor(n, RandomSources.seeded(SEED)));
+    }
+
+    /**
+     * Tests factor for 32771 * 1000000007 * 1099511627791 (challenging).
+     */
+    @Test
+    public void testFactorfor36032095806563529880372027() {
+        NaturalNumber n = new NaturalNumber2("36032095806563529880372027");
+        assertEquals(list("32771", "1000000007", "1099511627791"),
+                Factorization.factor(n, RandomSources.seeded(SEED)));
+    }
+
+}
@@ -0,0 +1,144 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * @author Charles Sirichoktanasup
+ *
+ */
+public class FixedBasePowerModTest {
+
+    /*
+     * Tests of windowBits
+     */
+
+    /**
+     * Tests windowBits for 1, 64, 1024, and 100000 (boundary).
+     */
+    @Test
+    public void testWindowBitsfor1and64and1024and100000() {
+        final int bits64 = 64;
+        final int bits1024 = 1024;
+        final int bits100000 = 100000;
+        final int three = 3;
+        final int six = 6;
+        assertEquals(1, FixedBasePowerMod.windowBits(1));
+        assertEquals(three, FixedBasePowerMod.windowBits(bits64));
+        assertEquals(six, FixedBasePowerMod.windowBits(bits1024));
+        assertEquals(FixedBasePowerMod.MAX_WINDOW_BITS,
+                FixedBasePowerMod.windowBits(bits100000));
+    }
+
+    /*
+     * Tests of powerMod
+     */
+
+    /**
+     * Tests powerMod for g = 5, p = 0, m = 3 (boundary).
+     */
+    @Test
+    public void testPowerModforg5p0m3() {
+        final int gInt = 5;
+        final int mInt = 3;
+        NaturalNumber g = new NaturalNumber2(gInt);
+        NaturalNumber m = new NaturalNumber2(mInt);
+        FixedBasePowerMod fixed = new FixedBasePowerMod(g, m);
+        NaturalNumber n = new NaturalNumber2();
+        NaturalNumber p = new NaturalNumber2(0);
+        fixed.powerMod(n, p);
+        assertEquals(new NaturalNumber2(1), n);
+        assertEquals(new NaturalNumber2(0), p);
+        assertEquals(new NaturalNumber2(gInt), g);
+    }
+
+    /**
+     * Tests powerMod for every digit size with a 200-bit exponent and
+     * m = 10^40 + 3 (challenging).
+     */
+    @Test
+    public void testPowerModEveryWindowm10to40plus3() {
+        NaturalNumber g = new NaturalNumber2("98765432109876543210987654321");
+        NaturalNumber m = new NaturalNumber2(
+                "10000000000000000000000000000000000000003");
+        NaturalNumber p = new NaturalNumber2(
+                "16069380442589902755419620923411626025222029937827928352"
+                        + "89031");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "3575765556707784332854267123026633679983");
+        for (int k = 1; k <= FixedBasePowerMod.MAX_WINDOW_BITS; k++) {
+            FixedBasePowerMod fixed = new FixedBasePowerMod(g, m, k);
+            NaturalNumber n = new NaturalNumber2();
+            fixed.powerMod(n, p);
+            assertEquals(nExpected, n);
+        }
+    }
+
+    /**
+     * Tests powerMod for g = 3, p = 10^40 + 7, m = 2^100, which is reduced
+     * by division (routine).
+     */
+    @Test
+    public void testPowerModforg3p10to40plus7m2to100() {
+        final int gInt = 3;
+        NaturalNumber g = new NaturalNumber2(gInt);
+        NaturalNumber m = new NaturalNumber2(
+                "1267650600228229401496703205376");
+        NaturalNumber p = new NaturalNumber2(
+                "10000000000000000000000000000000000000007");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "625072541457426120795217725579");
+        FixedBasePowerMod fixed = new FixedBasePowerMod(g, m);
+        NaturalNumber n = new NaturalNumber2();
+        fixed.powerMod(n, p);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests powerMod for g = 7, p = 2^300 + 1, m = 10^30 + 5, where p is much
+     * longer than m and the table has to grow (challenging).
+     */
+    @Test
+    public void testPowerModforg7p2to300plus1m10to30plus5() {
+        final int gInt = 7;
+        final int pBits = 300;
+        NaturalNumber g = new NaturalNumber2(gInt);
+        NaturalNumber m = new NaturalNumber2("1000000000000000000000000000005");
+        NaturalNumber p = new NaturalNumber2(2);
+        p.power(pBits);
+        p.increment();
+        NaturalNumber nExpected = new NaturalNumber2(
+                "576998268571511291841701402737");
+        FixedBasePowerMod fixed = new FixedBasePowerMod(g, m);
+        NaturalNumber n = new NaturalNumber2();
+        fixed.powerMod(n, p);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests powerMod against CryptoUtilities.powerMod for many exponents with
+     * the same base and modulus (routine).
+     */
+    @Test
+    public void testPowerModAgainstPowerModfor50Exponents() {
+        final int count = 50;
+        final long seed = 2221;
+        NaturalNumber g = new NaturalNumber2(2);
+        NaturalNumber m = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        FixedBasePowerMod fixed = new FixedBasePowerMod(g, m);
+        UniformSampler sampler = new UniformSampler(m);
+        RandomSource source = RandomSources.seeded(seed);
+        NaturalNumber n = new NaturalNumber2();
+        for (int i = 0; i < count; i++) {
+            NaturalNumber p = sampler.next(source);
+            NaturalNumber nExpected = new NaturalNumber2(g);
+            CryptoUtilities.powerMod(nExpected, p, m);
+            fixed.powerMod(n, p);
+            assertEquals(nExpected, n);
+        }
+    }
+
+}
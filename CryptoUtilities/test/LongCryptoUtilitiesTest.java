@@ -0,0 +1,271 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * @author Charles Sirichoktanasup
+ *
+ */
+public class LongCryptoUtilitiesTest {
+
+    /*
+     * Tests of toLong and setFromLong
+     */
+
+    /**
+     * Tests toLong for 0 (boundary).
+     */
+    @Test
+    public void testToLongfor0() {
+        NaturalNumber n = new NaturalNumber2(0);
+        NaturalNumber nExpected = new NaturalNumber2(0);
+        long result = LongCryptoUtilities.toLong(n);
+        assertEquals(0, result);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests toLong for 999999999999999999 (boundary).
+     */
+    @Test
+    public void testToLongfor999999999999999999() {
+        final long value = 999999999999999999L;
+        NaturalNumber n = new NaturalNumber2("999999999999999999");
+        NaturalNumber nExpected = new NaturalNumber2("999999999999999999");
+        long result = LongCryptoUtilities.toLong(n);
+        assertEquals(value, result);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests toLong for 1000000000000000000 (boundary).
+     */
+    @Test
+    public void testToLongfor1000000000000000000() {
+        NaturalNumber n = new NaturalNumber2("1000000000000000000");
+        NaturalNumber nExpected = new NaturalNumber2("1000000000000000000");
+        long result = LongCryptoUtilities.toLong(n);
+        assertEquals(-1, result);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests toLong for 999999999999999999 and 10^18 as NaturalNumber3
+     * (boundary).
+     */
+    @Test
+    public void testToLongfor10to18NaturalNumber3() {
+        final long value = 999999999999999999L;
+        NaturalNumber below = new NaturalNumber3("999999999999999999");
+        NaturalNumber at = new NaturalNumber3("1000000000000000000");
+        NaturalNumber atExpected = new NaturalNumber3("1000000000000000000");
+        assertEquals(value, LongCryptoUtilities.toLong(below));
+        assertEquals(-1, LongCryptoUtilities.toLong(at));
+        assertEquals(atExpected, at);
+    }
+
+    /**
+     * Tests toLong for 2^64 - 1 and 2^64 as NaturalNumber3, whose limbs do
+     * not fit in a signed long (challenging).
+     */
+    @Test
+    public void testToLongfor2to64NaturalNumber3() {
+        NaturalNumber twoLimbs = new NaturalNumber3("18446744073709551615");
+        NaturalNumber threeLimbs = new NaturalNumber3("18446744073709551616");
+        assertEquals(-1, LongCryptoUtilities.toLong(twoLimbs));
+        assertEquals(-1, LongCryptoUtilities.toLong(threeLimbs));
+    }
+
+    /**
+     * Tests toLong for 0 and 4294967296 as NaturalNumber3 (boundary).
+     */
+    @Test
+    public void testToLongfor0and2to32NaturalNumber3() {
+        final long twoTo32 = 4294967296L;
+        assertEquals(0, LongCryptoUtilities.toLong(new NaturalNumber3(0)));
+        assertEquals(twoTo32,
+                LongCryptoUtilities.toLong(new NaturalNumber3("4294967296")));
+    }
+
+    /**
+     * Tests setFromLong for 100000000000000000 (routine).
+     */
+    @Test
+    public void testSetFromLongfor100000000000000000() {
+        final long value = 100000000000000000L;
+        NaturalNumber n = new NaturalNumber2(1);
+        NaturalNumber nExpected = new NaturalNumber2("100000000000000000");
+        LongCryptoUtilities.setFromLong(n, value);
+        assertEquals(nExpected, n);
+    }
+
+    /*
+     * Tests of multiplyMod and powerMod
+     */
+
+    /**
+     * Tests multiplyMod for a product that overflows a long (challenging).
+     */
+    @Test
+    public void testMultiplyModfor999999999999999989squared() {
+        final long a = 999999999999999988L;
+        final long m = 999999999999999989L;
+        long result = LongCryptoUtilities.multiplyMod(a, a, m);
+        assertEquals(1, result);
+    }
+
+    /**
+     * Tests powerMod for n = 0, p = 0, and m = 2 (boundary).
+     */
+    @Test
+    public void testPowerModforn0p0m2() {
+        long result = LongCryptoUtilities.powerMod(0, 0, 2);
+        assertEquals(1, result);
+    }
+
+    /**
+     * Tests powerMod for n = 4, p = 987654321, and m = 256 (even modulus).
+     */
+    @Test
+    public void testPowerModforn4p987654321m256() {
+        final long n = 4;
+        final long p = 987654321;
+        final long m = 256;
+        long result = LongCryptoUtilities.powerMod(n, p, m);
+        assertEquals(0, result);
+    }
+
+    /**
+     * Tests powerMod for n = 2, p = 999999999999999988, and m =
+     * 999999999999999989 (challenging).
+     */
+    @Test
+    public void testPowerModforn2p999999999999999988m999999999999999989() {
+        final long p = 999999999999999988L;
+        final long m = 999999999999999989L;
+        long result = LongCryptoUtilities.powerMod(2, p, m);
+        assertEquals(1, result);
+    }
+
+    /*
+     * Tests of isPrime1 and isPrime2
+     */
+
+    /**
+     * Tests isPrime1 for 2 (boundary).
+     */
+    @Test
+    public void testIsPrime1for2() {
+        boolean isPrime = LongCryptoUtilities.isPrime1(2);
+        assertEquals(true, isPrime);
+    }
+
+    /**
+     * Tests isPrime2 for 5 (boundary).
+     */
+    @Test
+    public void testIsPrime2for5() {
+        final long n = 5;
+        boolean isPrime = LongCryptoUtilities.isPrime2(n);
+        assertEquals(true, isPrime);
+    }
+
+    /**
+     * Tests isPrime2 for 999999999999999989 (challenging).
+     */
+    @Test
+    public void testIsPrime2for999999999999999989() {
+        final long n = 999999999999999989L;
+        boolean isPrime = LongCryptoUtilities.isPrime2(n);
+        assertEquals(true, isPrime);
+    }
+
+    /**
+     * Tests isPrime2 for 999999999999999999 (challenging).
+     */
+    @Test
+    public void testIsPrime2for999999999999999999() {
+        final long n = 999999999999999999L;
+        boolean isPrime = LongCryptoUtilities.isPrime2(n);
+        assertEquals(false, isPrime);
+    }
+
+    /*
+     * Tests of isStrongWitnessToCompositeness
+     */
+
+    /**
+     * Tests isStrongWitnessToCompositeness for w = 2 and the strong
+     * pseudoprime n = 2047 = 1023 * 2 + 1 (not a witness).
+     */
+    @Test
+    public void testIsStrongWitnessToCompositenessfor2and2047() {
+        final long n = 2047;
+        final long d = 1023;
+        boolean isWitness = LongCryptoUtilities
+                .isStrongWitnessToCompositeness(2, n, d, 1);
+        assertEquals(false, isWitness);
+    }
+
+    /**
+     * Tests isPrime2 for the strong pseudoprime to bases 2, 3, 5 and 7
+     * 3215031751 (challenging).
+     */
+    @Test
+    public void testIsPrime2for3215031751() {
+        final long n = 3215031751L;
+        boolean isPrime = LongCryptoUtilities.isPrime2(n);
+        assertEquals(false, isPrime);
+    }
+
+    /*
+     * Tests of jacobi
+     */
+
+    /**
+     * Tests jacobi for (5/19), where 5 = 9^2 mod 19 (routine).
+     */
+    @Test
+    public void testJacobifor5and19() {
+        final long a = 5;
+        final long n = 19;
+        int result = LongCryptoUtilities.jacobi(a, n);
+        assertEquals(1, result);
+    }
+
+    /**
+     * Tests jacobi for (2/7) (routine).
+     */
+    @Test
+    public void testJacobifor2and7() {
+        final long n = 7;
+        int result = LongCryptoUtilities.jacobi(2, n);
+        assertEquals(1, result);
+    }
+
+    /**
+     * Tests jacobi for (7/15), where the denominator is composite (routine).
+     */
+    @Test
+    public void testJacobifor7and15() {
+        final long a = 7;
+        final long n = 15;
+        int result = LongCryptoUtilities.jacobi(a, n);
+        assertEquals(-1, result);
+    }
+
+    /**
+     * Tests jacobi for (6/15), where gcd(a, n) > 1 (boundary).
+     */
+    @Test
+    public void testJacobifor6and15() {
+        final long a = 6;
+        final long n = 15;
+        int result = LongCryptoUtilities.jacobi(a, n);
+        assertEquals(0, result);
+    }
+
+}
@@ -0,0 +1,323 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * @author Charles Sirichoktanasup
+ *
+ */
+public class MontgomeryContextTest {
+
+    /*
+     * Tests of canHandle
+     */
+
+    /**
+     * Tests canHandle for 3 (boundary).
+     */
+    @Test
+    public void testCanHandlefor3() {
+        final int mInt = 3;
+        NaturalNumber m = new NaturalNumber2(mInt);
+        NaturalNumber mExpected = new NaturalNumber2(mInt);
+        boolean result = MontgomeryContext.canHandle(m);
+        assertEquals(true, result);
+        assertEquals(mExpected, m);
+    }
+
+    /**
+     * Tests canHandle for 1 (boundary).
+     */
+    @Test
+    public void testCanHandlefor1() {
+        NaturalNumber m = new NaturalNumber2(1);
+        boolean result = MontgomeryContext.canHandle(m);
+        assertEquals(false, result);
+    }
+
+    /**
+     * Tests canHandle for 1005 (routine).
+     */
+    @Test
+    public void testCanHandlefor1005() {
+        final int mInt = 1005;
+        NaturalNumber m = new NaturalNumber2(mInt);
+        boolean result = MontgomeryContext.canHandle(m);
+        assertEquals(false, result);
+    }
+
+    /**
+     * Tests canHandle for 256 (routine).
+     */
+    @Test
+    public void testCanHandlefor256() {
+        final int mInt = 256;
+        NaturalNumber m = new NaturalNumber2(mInt);
+        boolean result = MontgomeryContext.canHandle(m);
+        assertEquals(false, result);
+    }
+
+    /*
+     * Tests of toMontgomery and fromMontgomery
+     */
+
+    /**
+     * Tests toMontgomery for a = 5 and m = 7 (routine).
+     */
+    @Test
+    public void testToMontgomeryfora5m7() {
+        final int aInt = 5;
+        final int aExpectedInt = 1;
+        final int mInt = 7;
+        NaturalNumber a = new NaturalNumber2(aInt);
+        NaturalNumber aExpected = new NaturalNumber2(aExpectedInt);
+        MontgomeryContext context = new MontgomeryContext(
+                new NaturalNumber2(mInt));
+        context.toMontgomery(a);
+        assertEquals(aExpected, a);
+    }
+
+    /**
+     * Tests fromMontgomery after toMontgomery for a = 123456 and m = 999983
+     * (challenging).
+     */
+    @Test
+    public void testRoundTripfora123456m999983() {
+        final int aInt = 123456;
+        final int mInt = 999983;
+        NaturalNumber a = new NaturalNumber2(aInt);
+        NaturalNumber aExpected = new NaturalNumber2(aInt);
+        MontgomeryContext context = new MontgomeryContext(
+                new NaturalNumber2(mInt));
+        context.toMontgomery(a);
+        context.fromMontgomery(a);
+        assertEquals(aExpected, a);
+    }
+
+    /*
+     * Tests of powerMod
+     */
+
+    /**
+     * Tests powerMod for n = 17, p = 18, and m = 19 (routine).
+     */
+    @Test
+    public void testPowerModforn17p18m19() {
+        final int nInt = 17;
+        final int pInt = 18;
+        final int mInt = 19;
+        NaturalNumber n = new NaturalNumber2(nInt);
+        NaturalNumber nExpected = new NaturalNumber2(1);
+        NaturalNumber p = new NaturalNumber2(pInt);
+        NaturalNumber pExpected = new NaturalNumber2(pInt);
+        MontgomeryContext context = new MontgomeryContext(
+                new NaturalNumber2(mInt));
+        context.powerMod(n, p);
+        assertEquals(nExpected, n);
+        assertEquals(pExpected, p);
+    }
+
+    /**
+     * Tests powerMod for n = 5, p = 0, and m = 3 (boundary).
+     */
+    @Test
+    public void testPowerModforn5p0m3() {
+        final int nInt = 5;
+        final int mInt = 3;
+        NaturalNumber n = new NaturalNumber2(nInt);
+        NaturalNumber nExpected = new NaturalNumber2(1);
+        NaturalNumber p = new NaturalNumber2(0);
+        MontgomeryContext context = new MontgomeryContext(
+                new NaturalNumber2(mInt));
+        context.powerMod(n, p);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests powerMod for n = 123456789, p = 987654321, and m = 1000000007
+     * (challenging).
+     */
+    @Test
+    public void testPowerModforn123456789p987654321m1000000007() {
+        final int nInt = 123456789;
+        final int nExpectedInt = 652541198;
+        final int pInt = 987654321;
+        final int mInt = 1000000007;
+        NaturalNumber n = new NaturalNumber2(nInt);
+        NaturalNumber nExpected = new NaturalNumber2(nExpectedInt);
+        NaturalNumber p = new NaturalNumber2(pInt);
+        NaturalNumber m = new NaturalNumber2(mInt);
+        NaturalNumber mExpected = new NaturalNumber2(mInt);
+        MontgomeryContext context = new MontgomeryContext(m);
+        context.powerMod(n, p);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+        assertEquals(mExpected, context.modulus());
+    }
+
+    /*
+     * Tests of windowBits and sliding-window powerMod
+     */
+
+    /**
+     * Tests windowBits for 23, 24, 256, and 2048 (boundary).
+     */
+    @Test
+    public void testWindowBitsfor23and24and256and2048() {
+        final int bits23 = 23;
+        final int bits24 = 24;
+        final int bits256 = 256;
+        final int bits2048 = 2048;
+        final int four = 4;
+        final int six = 6;
+        assertEquals(1, MontgomeryContext.windowBits(bits23));
+        assertEquals(2, MontgomeryContext.windowBits(bits24));
+        assertEquals(four, MontgomeryContext.windowBits(bits256));
+        assertEquals(six, MontgomeryContext.windowBits(bits2048));
+    }
+
+    /**
+     * Tests powerMod for every window size from 1 to MAX_WINDOW_BITS with a
+     * 200-bit exponent and m = 10^40 + 3 (challenging).
+     */
+    @Test
+    public void testPowerModEveryWindowm10to40plus3() {
+        NaturalNumber m = new NaturalNumber2(
+                "10000000000000000000000000000000000000003");
+        NaturalNumber p = new NaturalNumber2(
+                "16069380442589902755419620923411626025222029937827928352"
+                        + "89031");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "3575765556707784332854267123026633679983");
+        MontgomeryContext context = new MontgomeryContext(m);
+        for (int k = 1; k <= MontgomeryContext.MAX_WINDOW_BITS; k++) {
+            NaturalNumber n = new NaturalNumber2(
+                    "98765432109876543210987654321");
+            context.powerMod(n, p, k);
+            assertEquals(nExpected, n);
+        }
+    }
+
+    /*
+     * Tests of the binary radix for NaturalNumber3
+     */
+
+    /**
+     * Tests canHandle for 1005 and 256 as NaturalNumber3 (routine).
+     */
+    @Test
+    public void testCanHandlefor1005and256NaturalNumber3() {
+        final int odd = 1005;
+        final int even = 256;
+        NaturalNumber m = new NaturalNumber3(odd);
+        NaturalNumber mExpected = new NaturalNumber3(odd);
+        assertEquals(true, MontgomeryContext.canHandle(m));
+        assertEquals(mExpected, m);
+        assertEquals(false,
+                MontgomeryContext.canHandle(new NaturalNumber3(even)));
+    }
+
+    /**
+     * Tests fromMontgomery after toMontgomery for a = 123456 and m = 999983
+     * as NaturalNumber3 (routine).
+     */
+    @Test
+    public void testRoundTripfora123456m999983NaturalNumber3() {
+        final int aInt = 123456;
+        final int mInt = 999983;
+        NaturalNumber a = new NaturalNumber3(aInt);
+        NaturalNumber aExpected = new NaturalNumber3(aInt);
+        MontgomeryContext context = new MontgomeryContext(
+                new NaturalNumber3(mInt));
+        context.toMontgomery(a);
+        context.fromMontgomery(a);
+        assertEquals(aExpected, a);
+    }
+
+    /**
+     * Tests powerMod for every window size with a 200-bit exponent and
+     * m = 10^40 + 3 as NaturalNumber3, against the decimal radix
+     * (challenging).
+     */
+    @Test
+    public void testPowerModEveryWindowm10to40plus3NaturalNumber3() {
+        NaturalNumber m = new NaturalNumber3(
+                "10000000000000000000000000000000000000003");
+        NaturalNumber p = new NaturalNumber3(
+                "16069380442589902755419620923411626025222029937827928352"
+                        + "89031");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "3575765556707784332854267123026633679983");
+        MontgomeryContext context = new MontgomeryContext(m);
+        for (int k = 1; k <= MontgomeryContext.MAX_WINDOW_BITS; k++) {
+            NaturalNumber n = new NaturalNumber3(
+                    "98765432109876543210987654321");
+            context.powerMod(n, p, k);
+            assertEquals(nExpected, n);
+        }
+    }
+
+    /**
+     * Tests powerMod for m = 10^40 + 5 as NaturalNumber3, a multiple of 5
+     * the decimal radix cannot handle (challenging).
+     */
+    @Test
+    public void testPowerModm10to40plus5NaturalNumber3() {
+        NaturalNumber m = new NaturalNumber3(
+                "10000000000000000000000000000000000000005");
+        NaturalNumber n = new NaturalNumber3("98765432109876543210987654321");
+        NaturalNumber p = new NaturalNumber3(
+                "16069380442589902755419620923411626025222029937827928352"
+                        + "89031");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "168054268794052020972210511075269877116");
+        assertEquals(true, MontgomeryContext.canHandle(m));
+        assertEquals(false, MontgomeryContext.canHandle(new NaturalNumber2(
+                "10000000000000000000000000000000000000005")));
+        new MontgomeryContext(m).powerMod(n, p);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests powerMod for a NaturalNumber2 base with a NaturalNumber3
+     * modulus, n = 123456789123456789, p = 2^64 + 1, and m = 2^96 + 5^20
+     * (challenging).
+     */
+    @Test
+    public void testPowerModMixedImplementations() {
+        NaturalNumber m = new NaturalNumber3("79228162514264432960975590961");
+        NaturalNumber n = new NaturalNumber2("123456789123456789");
+        NaturalNumber p = new NaturalNumber3("18446744073709551617");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "12106580728578054009089336515");
+        new MontgomeryContext(m).powerMod(n, p);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests multiply and square as NaturalNumber3 for a = m - 1, b = m - 2
+     * and m = 2^128 - 159, where the product's reduction carries out of the
+     * top limb (boundary).
+     */
+    @Test
+    public void testMultiplyAndSquareforTopCarryNaturalNumber3() {
+        NaturalNumber m = new NaturalNumber3(
+                "340282366920938463463374607431768211297");
+        NaturalNumber a = new NaturalNumber3(m);
+        a.decrement();
+        NaturalNumber b = new NaturalNumber3(a);
+        b.decrement();
+        NaturalNumber square = new NaturalNumber3(a);
+        MontgomeryContext context = new MontgomeryContext(m);
+        context.multiply(a, b);
+        context.square(square);
+        assertEquals(new NaturalNumber2(
+                "130548581019982680951357553794577741441"), a);
+        assertEquals(new NaturalNumber2(
+                "235415473970460572207366080613172976369"), square);
+    }
+
+}
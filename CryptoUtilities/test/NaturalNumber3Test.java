@@ -0,0 +1,212 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * @author Charles Sirichoktanasup
+ *
+ */
+public class NaturalNumber3Test {
+
+    /*
+     * Each test builds its numbers as NaturalNumber3 and compares against the
+     * expected values as NaturalNumber2, so the limb representation is checked
+     * against the reference implementation
+     */
+
+    /*
+     * Tests of constructors and toString
+     */
+
+    /**
+     * Tests the no-argument constructor (boundary).
+     */
+    @Test
+    public void testNoArgumentConstructor() {
+        NaturalNumber n = new NaturalNumber3();
+        NaturalNumber nExpected = new NaturalNumber2();
+        assertEquals(nExpected, n);
+        assertEquals("0", n.toString());
+    }
+
+    /**
+     * Tests the String constructor for a number spanning several limbs
+     * (challenging).
+     */
+    @Test
+    public void testStringConstructorfor123456789012345678901234567890() {
+        final String s = "123456789012345678901234567890";
+        NaturalNumber n = new NaturalNumber3(s);
+        NaturalNumber nExpected = new NaturalNumber2(s);
+        assertEquals(nExpected, n);
+        assertEquals(s, n.toString());
+    }
+
+    /**
+     * Tests toString for 1000000000000000000 (inner zeros).
+     */
+    @Test
+    public void testToStringfor1000000000000000000() {
+        final String s = "1000000000000000000";
+        NaturalNumber n = new NaturalNumber3(s);
+        assertEquals(s, n.toString());
+    }
+
+    /*
+     * Tests of kernel methods
+     */
+
+    /**
+     * Tests multiplyBy10 for 4294967295 and 9 (carry into a new limb).
+     */
+    @Test
+    public void testMultiplyBy10for4294967295and9() {
+        NaturalNumber n = new NaturalNumber3("4294967295");
+        NaturalNumber nExpected = new NaturalNumber2("42949672959");
+        final int k = 9;
+        n.multiplyBy10(k);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests divideBy10 for 42949672959 (borrow out of the top limb).
+     */
+    @Test
+    public void testDivideBy10for42949672959() {
+        NaturalNumber n = new NaturalNumber3("42949672959");
+        NaturalNumber nExpected = new NaturalNumber2("4294967295");
+        final int dExpected = 9;
+        int d = n.divideBy10();
+        assertEquals(nExpected, n);
+        assertEquals(dExpected, d);
+    }
+
+    /*
+     * Tests of secondary methods
+     */
+
+    /**
+     * Tests decrement for 4294967296 (borrow across a limb).
+     */
+    @Test
+    public void testDecrementfor4294967296() {
+        NaturalNumber n = new NaturalNumber3("4294967296");
+        NaturalNumber nExpected = new NaturalNumber2("4294967295");
+        n.decrement();
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests subtract for 18446744073709551616 - 1 (borrow through every limb).
+     */
+    @Test
+    public void testSubtractfor18446744073709551616minus1() {
+        NaturalNumber n = new NaturalNumber3("18446744073709551616");
+        NaturalNumber m = new NaturalNumber3(1);
+        NaturalNumber nExpected = new NaturalNumber2("18446744073709551615");
+        n.subtract(m);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests multiply for two multi-limb numbers (challenging).
+     */
+    @Test
+    public void testMultiplyfor98765432109876543210and12345678901234567890() {
+        NaturalNumber n = new NaturalNumber3("98765432109876543210");
+        NaturalNumber m = new NaturalNumber3("12345678901234567890");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "1219326311370217952237463801111263526900");
+        n.multiply(m);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests divide by a multi-limb divisor (challenging).
+     */
+    @Test
+    public void testDividefor1219326311370217952237463801111263526907() {
+        NaturalNumber n = new NaturalNumber3(
+                "1219326311370217952237463801111263526907");
+        NaturalNumber m = new NaturalNumber3("12345678901234567890");
+        NaturalNumber nExpected = new NaturalNumber2("98765432109876543210");
+        NaturalNumber rExpected = new NaturalNumber2(7);
+        NaturalNumber r = n.divide(m);
+        assertEquals(nExpected, n);
+        assertEquals(rExpected, r);
+    }
+
+    /**
+     * Tests divide by a larger divisor (boundary).
+     */
+    @Test
+    public void testDividefor5and18446744073709551616() {
+        final int nInt = 5;
+        NaturalNumber n = new NaturalNumber3(nInt);
+        NaturalNumber m = new NaturalNumber3("18446744073709551616");
+        NaturalNumber nExpected = new NaturalNumber2(0);
+        NaturalNumber rExpected = new NaturalNumber2(nInt);
+        NaturalNumber r = n.divide(m);
+        assertEquals(nExpected, n);
+        assertEquals(rExpected, r);
+    }
+
+    /**
+     * Tests compareTo against a NaturalNumber2 (routine).
+     */
+    @Test
+    public void testCompareToNaturalNumber2() {
+        NaturalNumber n = new NaturalNumber3("4294967296");
+        NaturalNumber m = new NaturalNumber2("4294967295");
+        assertEquals(true, n.compareTo(m) > 0);
+    }
+
+    /*
+     * Tests of CryptoUtilities on NaturalNumber3
+     */
+
+    /**
+     * Tests CryptoUtilities.powerMod for n = 4, p = 987654321, and m = 256
+     * (division path).
+     */
+    @Test
+    public void testPowerModforn4p987654321m256() {
+        final int nInt = 4;
+        final int pInt = 987654321;
+        final int mInt = 256;
+        NaturalNumber n = new NaturalNumber3(nInt);
+        NaturalNumber nExpected = new NaturalNumber2(0);
+        NaturalNumber p = new NaturalNumber3(pInt);
+        NaturalNumber m = new NaturalNumber3(mInt);
+        CryptoUtilities.powerMod(n, p, m);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests CryptoUtilities.isPrime2 for the Mersenne prime 2^61 - 1
+     * (challenging).
+     */
+    @Test
+    public void testIsPrime2for2305843009213693951() {
+        NaturalNumber n = new NaturalNumber3("2305843009213693951");
+        boolean isPrime = CryptoUtilities.isPrime2(n);
+        assertEquals(true, isPrime);
+    }
+
+    /**
+     * Tests CryptoUtilities.generateNextLikelyPrime for 1000000000000 and keeps
+     * the implementation of n (routine).
+     */
+    @Test
+    public void testGenerateNextLikelyPrimefor1000000000000() {
+        NaturalNumber n = new NaturalNumber3("1000000000000");
+        NaturalNumber nExpected = new NaturalNumber2("1000000000039");
+        CryptoUtilities.generateNextLikelyPrime(n);
+        assertEquals(nExpected, n);
+        assertEquals(true, n instanceof NaturalNumber3);
+    }
+
+}
@@ -0,0 +1,119 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * @author Charles Sirichoktanasup
+ *
+ */
+public class PrimalityBatchTest {
+
+    /**
+     * Tests screen for 2 (boundary).
+     */
+    @Test
+    public void testScreenfor2() {
+        assertEquals("2\tprime\tprime\t2", PrimalityBatch.screen("2"));
+    }
+
+    /**
+     * Tests screen for 561, a Carmichael number that fools isPrime1 but not
+     * isPrime2 (routine).
+     */
+    @Test
+    public void testScreenfor561() {
+        assertEquals("561\tprime\tcomposite\t563",
+                PrimalityBatch.screen("561"));
+    }
+
+    /**
+     * Tests screen for 1, an empty line and a non-number (boundary).
+     */
+    @Test
+    public void testScreenforInvalidLines() {
+        assertEquals("1\tinvalid", PrimalityBatch.screen("1"));
+        assertEquals("\tinvalid", PrimalityBatch.screen(""));
+        assertEquals("12a\tinvalid", PrimalityBatch.screen("12a"));
+    }
+
+    /**
+     * Tests screen for 007 and 000, whose leading zeros are dropped
+     * (boundary).
+     */
+    @Test
+    public void testScreenforLeadingZeros() {
+        assertEquals("7\tprime\tprime\t7", PrimalityBatch.screen("007"));
+        assertEquals("000\tinvalid", PrimalityBatch.screen("000"));
+    }
+
+    /**
+     * Tests screen for Arabic-Indic digits, which are digits but not ASCII
+     * ones (challenging).
+     */
+    @Test
+    public void testScreenforNonAsciiDigits() {
+        String line = "\u0661\u0662";
+        assertEquals(line + "\tinvalid", PrimalityBatch.screen(line));
+    }
+
+    /**
+     * Tests run for 97, 007 and Arabic-Indic digits on 2 threads: every line
+     * gets its own result and the batch finishes (challenging).
+     *
+     * @throws IOException
+     *             never
+     */
+    @Test
+    public void testRunforLeadingZerosAndNonAsciiDigits() throws IOException {
+        StringWriter out = new StringWriter();
+        PrimalityBatch.run(new BufferedReader(
+                new StringReader("97\n007\n\u0661\u0662\n")), out, 2);
+        assertEquals("97\tprime\tprime\t97\n7\tprime\tprime\t7\n"
+                + "\u0661\u0662\tinvalid\n", out.toString());
+    }
+
+    /**
+     * Tests run for an empty input (boundary).
+     *
+     * @throws IOException
+     *             never
+     */
+    @Test
+    public void testRunforEmptyInput() throws IOException {
+        StringWriter out = new StringWriter();
+        PrimalityBatch.run(new BufferedReader(new StringReader("")), out, 2);
+        assertEquals("", out.toString());
+    }
+
+    /**
+     * Tests run for 1000 lines on 3 threads, so the window fills and drains
+     * many times, against screen on each line in order (challenging).
+     *
+     * @throws IOException
+     *             never
+     */
+    @Test
+    public void testRunfor1000LinesOn3Threads() throws IOException {
+        final int lines = 1000;
+        final int threads = 3;
+        final long first = 1_000_000_000_000L;
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            String line = Long.toString(first + i);
+            input.append(line).append('\n');
+            expected.append(PrimalityBatch.screen(line)).append('\n');
+        }
+        StringWriter out = new StringWriter();
+        PrimalityBatch.run(
+                new BufferedReader(new StringReader(input.toString())), out,
+                threads);
+        assertEquals(expected.toString(), out.toString());
+    }
+
+}
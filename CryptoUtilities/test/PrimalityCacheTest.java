@@ -0,0 +1,134 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.junit.Test;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * @author Charles Sirichoktanasup
+ *
+ */
+public class PrimalityCacheTest {
+
+    /**
+     * Tests isPrime2 for the same composite twice: one miss, then one hit
+     * (routine).
+     */
+    @Test
+    public void testIsPrime2for561Twice() {
+        final int nInt = 561;
+        PrimalityCache cache = new PrimalityCache();
+        NaturalNumber n = new NaturalNumber2(nInt);
+        assertEquals(false, cache.isPrime2(n));
+        assertEquals(false, cache.isPrime2(new NaturalNumber3(nInt)));
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.hits());
+        assertEquals(new NaturalNumber2(nInt), n);
+    }
+
+    /**
+     * Tests that a composite verdict from isPrime2 answers isPrime1, and a
+     * prime verdict from isPrime2 does not (routine).
+     */
+    @Test
+    public void testIsPrime1AfterIsPrime2() {
+        final int composite = 1001;
+        final int prime = 1009;
+        PrimalityCache cache = new PrimalityCache();
+        cache.isPrime2(new NaturalNumber2(composite));
+        cache.isPrime2(new NaturalNumber2(prime));
+        assertEquals(false, cache.isPrime1(new NaturalNumber2(composite)));
+        assertEquals(true, cache.isPrime1(new NaturalNumber2(prime)));
+        assertEquals(1, cache.hits());
+        assertEquals(2 + 1, cache.misses());
+    }
+
+    /**
+     * Tests isPrime2 above 2^64 with more rounds than are on record, which
+     * has to test again (boundary).
+     */
+    @Test
+    public void testIsPrime2forMoreRoundsThanRecorded() {
+        final int few = 5;
+        final int many = 40;
+        PrimalityCache cache = new PrimalityCache();
+        NaturalNumber p = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        assertEquals(true, cache.isPrime2(p, few));
+        assertEquals(true, cache.isPrime2(p, few));
+        assertEquals(true, cache.isPrime2(p, many));
+        assertEquals(true, cache.isPrime2(p, few));
+        assertEquals(2, cache.misses());
+        assertEquals(2, cache.hits());
+    }
+
+    /**
+     * Tests that below 2^64 a prime verdict answers any number of rounds
+     * (boundary).
+     */
+    @Test
+    public void testIsPrime2forExactPrime() {
+        final int many = 1000;
+        PrimalityCache cache = new PrimalityCache();
+        NaturalNumber p = new NaturalNumber2("18446744073709551557");
+        assertEquals(true, cache.isPrime2(p));
+        assertEquals(true, cache.isPrime2(p, many));
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.hits());
+    }
+
+    /**
+     * Tests that the least recently used verdict is evicted (boundary).
+     */
+    @Test
+    public void testEvictionforCapacity2() {
+        final int a = 11;
+        final int b = 13;
+        final int c = 17;
+        PrimalityCache cache = new PrimalityCache(2);
+        cache.isPrime2(new NaturalNumber2(a));
+        cache.isPrime2(new NaturalNumber2(b));
+        cache.isPrime2(new NaturalNumber2(a));
+        cache.isPrime2(new NaturalNumber2(c));
+        assertEquals(2, cache.size());
+        cache.isPrime2(new NaturalNumber2(a));
+        cache.isPrime2(new NaturalNumber2(b));
+        final int missesExpected = 4;
+        assertEquals(missesExpected, cache.misses());
+        assertEquals(2, cache.hits());
+    }
+
+    /**
+     * Tests the cache shared by four threads asking about the same numbers
+     * (challenging).
+     */
+    @Test
+    public void testIsPrime2OnFourThreads() {
+        final int threads = 4;
+        final int numbers = 200;
+        final int first = 1_000_000;
+        PrimalityCache cache = new PrimalityCache();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[threads];
+        for (int t = 0; t < threads; t++) {
+            tasks[t] = pool.submit(() -> {
+                for (int i = 0; i < numbers; i++) {
+                    NaturalNumber n = new NaturalNumber2(first + i);
+                    assertEquals(CryptoUtilities.isPrime2(n),
+                            cache.isPrime2(n));
+                }
+            });
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        pool.shutdown();
+        assertEquals(numbers, cache.size());
+        assertEquals(threads * numbers, cache.hits() + cache.misses());
+    }
+
+}
@@ -0,0 +1,111 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
+
+import org.junit.Test;
+
+/**
+ * @author Charles Sirichoktanasup
+ *
+ */
+public class PrimeSieveTest {
+
+    /**
+     * Tests primes for [0, 1], which has no primes (boundary).
+     */
+    @Test
+    public void testPrimesfor0to1() {
+        assertEquals(0, PrimeSieve.primes(0, 1).count());
+    }
+
+    /**
+     * Tests primes for [2, 2] and [5, 3] (boundary).
+     */
+    @Test
+    public void testPrimesfor2to2and5to3() {
+        final long five = 5;
+        final long three = 3;
+        assertArrayEquals(new long[] { 2 },
+                PrimeSieve.primes(2, 2).toArray());
+        assertEquals(0, PrimeSieve.primes(five, three).count());
+    }
+
+    /**
+     * Tests primes for [0, 30] (routine).
+     */
+    @Test
+    public void testPrimesfor0to30() {
+        final long thirty = 30;
+        final long[] expected = { 2, 3, 5, 7, 11, 13, 17, 19, 23, 29 };
+        assertArrayEquals(expected, PrimeSieve.primes(0, thirty).toArray());
+    }
+
+    /**
+     * Tests the number of primes below 10^6 (routine).
+     */
+    @Test
+    public void testPrimesCountfor0to10to6() {
+        final long million = 1_000_000;
+        final long count = 78_498;
+        assertEquals(count, PrimeSieve.primes(0, million).count());
+    }
+
+    /**
+     * Tests primes across the first segment boundary, 2^19 (boundary).
+     */
+    @Test
+    public void testPrimesfor524269to524309() {
+        final long a = 524_269;
+        final long b = 524_309;
+        final long[] expected = { 524_269, 524_287, 524_309 };
+        assertArrayEquals(expected, PrimeSieve.primes(a, b).toArray());
+    }
+
+    /**
+     * Tests primes for the last 200 numbers up to MAX_BOUND, which needs
+     * every base prime below 2^26 (boundary).
+     */
+    @Test
+    public void testPrimesforLast200BeforeMaxBound() {
+        final long span = 200;
+        final long[] expected = { 4_503_599_627_370_299L,
+            4_503_599_627_370_313L, 4_503_599_627_370_323L,
+            4_503_599_627_370_353L, 4_503_599_627_370_449L };
+        assertArrayEquals(expected, PrimeSieve
+                .primes(PrimeSieve.MAX_BOUND - span, PrimeSieve.MAX_BOUND)
+                .toArray());
+    }
+
+    /**
+     * Tests primes for [10^12, 10^12 + 10^5] against isPrime2
+     * (challenging).
+     */
+    @Test
+    public void testPrimesfor10to12Plus10to5() {
+        final long a = 1_000_000_000_000L;
+        final long b = a + 100_000;
+        long[] expected = LongStream.rangeClosed(a, b)
+                .filter(LongCryptoUtilities::isPrime2).toArray();
+        assertArrayEquals(expected, PrimeSieve.primes(a, b).toArray());
+    }
+
+    /**
+     * Tests forEachPrime on a pool against the sequential stream, for a range
+     * of several segments (challenging).
+     */
+    @Test
+    public void testForEachPrimeOnPoolfor10to9Plus3Million() {
+        final long a = 1_000_000_000L;
+        final long b = a + 3_000_000;
+        final int threads = 4;
+        long[] expected = PrimeSieve.primes(a, b).toArray();
+        LongStream.Builder actual = LongStream.builder();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        PrimeSieve.forEachPrime(a, b, actual, pool);
+        pool.shutdown();
+        assertArrayEquals(expected, actual.build().toArray());
+    }
+
+}
@@ -0,0 +1,186 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * JUnit test fixture for RSAKeyGenerator and RSAKeyPair.
+ *
+ * @author Charles Sirichoktanasup
+ *
+ */
+public class RSAKeyGeneratorTest {
+
+    /**
+     * Checks every value of key against the others, and that n has exactly
+     * bits bits.
+     *
+     * @param key
+     *            the key pair
+     * @param bits
+     *            the expected size of n
+     */
+    private static void checkKey(RSAKeyPair key, int bits) {
+        NaturalNumber one = new NaturalNumber2(1);
+        assertEquals(bits, UniformSampler.bitLength(key.n()));
+        assertTrue(key.p().compareTo(key.q()) > 0);
+        assertTrue(CryptoUtilities.isPrime2(key.p()));
+        assertTrue(CryptoUtilities.isPrime2(key.q()));
+        NaturalNumber n = new NaturalNumber2(key.p());
+        n.multiply(key.q());
+        assertEquals(n, new NaturalNumber2(key.n()));
+        /*
+         * e * d = 1 mod (p - 1)(q - 1)
+         */
+        NaturalNumber pMinus1 = new NaturalNumber2(key.p());
+        pMinus1.decrement();
+        NaturalNumber qMinus1 = new NaturalNumber2(key.q());
+        qMinus1.decrement();
+        NaturalNumber phi = new NaturalNumber2(pMinus1);
+        phi.multiply(qMinus1);
+        NaturalNumber ed = new NaturalNumber2(key.e());
+        ed.multiply(key.d());
+        assertEquals(one, ed.divide(phi));
+        /*
+         * dP, dQ and qInv
+         */
+        assertEquals(new NaturalNumber2(key.d()).divide(pMinus1),
+                new NaturalNumber2(key.dP()));
+        assertEquals(new NaturalNumber2(key.d()).divide(qMinus1),
+                new NaturalNumber2(key.dQ()));
+        NaturalNumber qqInv = new NaturalNumber2(key.q());
+        qqInv.multiply(key.qInv());
+        assertEquals(one, qqInv.divide(key.p()));
+        assertTrue(key.isConsistent());
+    }
+
+    /**
+     * Tests generate for the smallest key size (boundary).
+     */
+    @Test
+    public void testGeneratefor16Bits() {
+        final int bits = 16;
+        final int threads = 2;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        RSAKeyGenerator generator = new RSAKeyGenerator(bits, pool);
+        RSAKeyPair key = generator.generate();
+        pool.shutdown();
+        checkKey(key, bits);
+        assertEquals(new NaturalNumber2(RSAKeyGenerator.DEFAULT_EXPONENT),
+                new NaturalNumber2(key.e()));
+    }
+
+    /**
+     * Tests generate for a 128-bit key with e = 3 and NaturalNumber2
+     * (routine).
+     */
+    @Test
+    public void testGeneratefor128BitsExponent3() {
+        final int bits = 128;
+        final int three = 3;
+        final long seed = 2221;
+        final int threads = 2;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        RSAKeyGenerator generator = new RSAKeyGenerator(bits, three,
+                new NaturalNumber2(), RandomSources.seeded(seed), pool);
+        RSAKeyPair key = generator.generate();
+        pool.shutdown();
+        checkKey(key, bits);
+        assertEquals(new NaturalNumber2(three), new NaturalNumber2(key.e()));
+    }
+
+    /**
+     * Tests generate for a batch of 64-bit keys on four threads
+     * (challenging).
+     */
+    @Test
+    public void testGeneratefor64BitsBatchOf8() {
+        final int bits = 64;
+        final int count = 8;
+        final int threads = 4;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        RSAKeyGenerator generator = new RSAKeyGenerator(bits, pool);
+        List<RSAKeyPair> keys = generator.generate(count);
+        pool.shutdown();
+        assertEquals(count, keys.size());
+        for (RSAKeyPair key : keys) {
+            checkKey(key, bits);
+        }
+    }
+
+    /**
+     * Tests generate for an empty batch (boundary).
+     */
+    @Test
+    public void testGeneratefor0Keys() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        RSAKeyGenerator generator = new RSAKeyGenerator(
+                RSAKeyGenerator.MIN_BITS, pool);
+        List<RSAKeyPair> keys = generator.generate(0);
+        pool.shutdown();
+        assertEquals(0, keys.size());
+    }
+
+    /**
+     * Tests privatePower against powerMod modulo n for a 256-bit key
+     * (routine).
+     */
+    @Test
+    public void testPrivatePowerfor256Bits() {
+        final int bits = 256;
+        final long seed = 2221;
+        final int threads = 2;
+        final int messages = 8;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        RSAKeyGenerator generator = new RSAKeyGenerator(bits,
+                RSAKeyGenerator.DEFAULT_EXPONENT, new NaturalNumber2(),
+                RandomSources.seeded(seed), pool);
+        RSAKeyPair key = generator.generate();
+        NaturalNumber top = new NaturalNumber2(key.n());
+        top.decrement();
+        UniformSampler sampler = new UniformSampler(top);
+        for (int i = 0; i < messages; i++) {
+            NaturalNumber c = sampler.next(RandomSources.seeded(seed + i));
+            NaturalNumber expected = new NaturalNumber2(c);
+            CryptoUtilities.powerMod(expected, key.d(), key.n());
+            NaturalNumber sequential = new NaturalNumber2(c);
+            key.privatePower(sequential);
+            assertEquals(expected, sequential);
+            NaturalNumber parallel = new NaturalNumber2(c);
+            key.privatePower(parallel, pool);
+            assertEquals(expected, parallel);
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Tests privatePower for 0, 1, p, q and n - 1 (boundary).
+     */
+    @Test
+    public void testPrivatePowerforEdgeValues() {
+        final int bits = 64;
+        ForkJoinPool pool = new ForkJoinPool(1);
+        RSAKeyGenerator generator = new RSAKeyGenerator(bits, pool);
+        RSAKeyPair key = generator.generate();
+        pool.shutdown();
+        NaturalNumber nMinus1 = new NaturalNumber2(key.n());
+        nMinus1.decrement();
+        NaturalNumber[] values = { new NaturalNumber2(0),
+                new NaturalNumber2(1), new NaturalNumber2(key.p()),
+                new NaturalNumber2(key.q()), nMinus1 };
+        for (NaturalNumber c : values) {
+            NaturalNumber expected = new NaturalNumber2(c);
+            CryptoUtilities.powerMod(expected, key.d(), key.n());
+            NaturalNumber actual = new NaturalNumber2(c);
+            key.privatePower(actual);
+            assertEquals(expected, actual);
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.junit.Test;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * @author Charles Sirichoktanasup
+ *
+ */
+public class RandomSourcesTest {
+
+    /*
+     * Tests of seeded and perThread
+     */
+
+    /**
+     * Tests seeded for two sources with the same seed (routine).
+     */
+    @Test
+    public void testSeededSameSeedSameSequence() {
+        final long seed = 2221;
+        final int draws = 100;
+        RandomSource a = RandomSources.seeded(seed);
+        RandomSource b = RandomSources.seeded(seed);
+        for (int i = 0; i < draws; i++) {
+            assertEquals(a.nextLong(), b.nextLong());
+        }
+    }
+
+    /**
+     * Tests nextDouble of perThread stays in [0, 1) (boundary).
+     */
+    @Test
+    public void testPerThreadNextDoubleInRange() {
+        final int draws = 1000;
+        RandomSource source = RandomSources.perThread();
+        for (int i = 0; i < draws; i++) {
+            double x = source.nextDouble();
+            assertEquals(true, 0 <= x && x < 1);
+        }
+    }
+
+    /*
+     * Tests of CryptoUtilities with a given source
+     */
+
+    /**
+     * Tests randomNumber for 10^40 with two sources with the same seed
+     * (routine).
+     */
+    @Test
+    public void testRandomNumberSeededfor10to40() {
+        final long seed = 42;
+        NaturalNumber n = new NaturalNumber2(
+                "10000000000000000000000000000000000000000");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "10000000000000000000000000000000000000000");
+        NaturalNumber a = CryptoUtilities.randomNumber(n,
+                RandomSources.seeded(seed));
+        NaturalNumber b = CryptoUtilities.randomNumber(n,
+                RandomSources.seeded(seed));
+        assertEquals(a, b);
+        assertEquals(true, a.compareTo(n) <= 0);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests isPrime2 for 2^127 - 1 and 2^127 + 1 on four threads sharing one
+     * seeded source (challenging).
+     */
+    @Test
+    public void testIsPrime2SharedSourceOnFourThreads() {
+        final int threads = 4;
+        final int rounds = 10;
+        final String prime = "170141183460469231731687303715884105727";
+        final String composite = "170141183460469231731687303715884105729";
+        RandomSource source = RandomSources.seeded(1);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[threads];
+        boolean[] results = new boolean[2 * threads];
+        for (int t = 0; t < threads; t++) {
+            final int i = t;
+            tasks[t] = pool.submit(() -> {
+                results[2 * i] = CryptoUtilities.isPrime2(
+                        new NaturalNumber2(prime), rounds, source);
+                results[2 * i + 1] = CryptoUtilities.isPrime2(
+                        new NaturalNumber2(composite), rounds, source);
+            });
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        pool.shutdown();
+        for (int t = 0; t < threads; t++) {
+            assertEquals(true, results[2 * t]);
+            assertEquals(false, results[2 * t + 1]);
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * @author Charles Sirichoktanasup
+ *
+ */
+public class SmallPrimesTest {
+
+    /*
+     * Tests of count, prime, and largest
+     */
+
+    /**
+     * Tests count for the primes below 2^15 (routine).
+     */
+    @Test
+    public void testCount() {
+        final int countExpected = 3512;
+        assertEquals(countExpected, SmallPrimes.count());
+    }
+
+    /**
+     * Tests prime for index 0 (boundary).
+     */
+    @Test
+    public void testPrimefor0() {
+        assertEquals(2, SmallPrimes.prime(0));
+    }
+
+    /**
+     * Tests largest for the primes below 2^15 (boundary).
+     */
+    @Test
+    public void testLargest() {
+        final int largestExpected = 32749;
+        assertEquals(largestExpected, SmallPrimes.largest());
+    }
+
+    /*
+     * Tests of residues, sieveOddWindow, and advance
+     */
+
+    /**
+     * Tests residues for 1000000000000000000000 (challenging).
+     */
+    @Test
+    public void testResiduesfor1000000000000000000000() {
+        NaturalNumber n = new NaturalNumber2("1000000000000000000000");
+        NaturalNumber nExpected = new NaturalNumber2("1000000000000000000000");
+        final int last = SmallPrimes.count() - 1;
+        final int rExpected = 1000000000 % 32749;
+        int[] r = SmallPrimes.residues(n);
+        assertEquals(0, r[0]);
+        assertEquals(1, r[1]);
+        /* 10^21 = (10^9 mod p)^2 * 1000 (mod p) */
+        final long lastExpected = (long) rExpected * rExpected % 32749 * 1000
+                % 32749;
+        assertEquals(lastExpected, r[last]);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests sieveOddWindow for the odd numbers starting at 32769 (routine).
+     */
+    @Test
+    public void testSieveOddWindowfor32769() {
+        final int m = 32769;
+        final int size = 16;
+        NaturalNumber n = new NaturalNumber2(m);
+        int[] r = SmallPrimes.residues(n);
+        boolean[] composite = new boolean[size];
+        SmallPrimes.sieveOddWindow(r, composite);
+        for (int j = 0; j < size; j++) {
+            boolean isPrime = CryptoUtilities.isPrime2(new NaturalNumber2(m + 2
+                    * j));
+            assertEquals(!isPrime, composite[j]);
+        }
+    }
+
+    /**
+     * Tests advance for 32769 advanced by 4096 (routine).
+     */
+    @Test
+    public void testAdvancefor32769by4096() {
+        final int m = 32769;
+        final int delta = 4096;
+        int[] r = SmallPrimes.residues(new NaturalNumber2(m));
+        int[] rExpected = SmallPrimes.residues(new NaturalNumber2(m + delta));
+        SmallPrimes.advance(r, delta);
+        for (int i = 0; i < SmallPrimes.count(); i++) {
+            assertEquals(rExpected[i], r[i]);
+        }
+    }
+
+    /**
+     * Tests markWindow with step 4 on top of sieveOddWindow: the marks for q
+     * and for 2q + 1 combine (challenging).
+     */
+    @Test
+    public void testMarkWindowforSafePrimePairsFrom40001() {
+        final int q = 40001;
+        final int size = 64;
+        final int four = 4;
+        int[] qResidues = SmallPrimes.residues(new NaturalNumber2(q));
+        int[] pResidues = SmallPrimes.residues(new NaturalNumber2(2 * q + 1));
+        boolean[] composite = new boolean[size];
+        SmallPrimes.sieveOddWindow(qResidues, composite);
+        SmallPrimes.markWindow(pResidues, 2, composite);
+        for (int j = 0; j < size; j++) {
+            boolean bothPrime = CryptoUtilities
+                    .isPrime2(new NaturalNumber2(q + 2 * j))
+                    && CryptoUtilities
+                            .isPrime2(new NaturalNumber2(2 * q + 1 + four * j));
+            assertEquals(!bothPrime, composite[j]);
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * @author Charles Sirichoktanasup
+ *
+ */
+public class UniformSamplerTest {
+
+    /*
+     * Tests of bitLength
+     */
+
+    /**
+     * Tests bitLength for 1 (boundary).
+     */
+    @Test
+    public void testBitLengthfor1() {
+        NaturalNumber n = new NaturalNumber2(1);
+        NaturalNumber nExpected = new NaturalNumber2(1);
+        int bits = UniformSampler.bitLength(n);
+        assertEquals(1, bits);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests bitLength for 2^30 - 1 and 2^30 (boundary).
+     */
+    @Test
+    public void testBitLengthfor2to30() {
+        final int twoTo30 = 1 << 30;
+        final int bitsExpected = 30;
+        NaturalNumber below = new NaturalNumber2(twoTo30 - 1);
+        NaturalNumber at = new NaturalNumber2(twoTo30);
+        assertEquals(bitsExpected, UniformSampler.bitLength(below));
+        assertEquals(bitsExpected + 1, UniformSampler.bitLength(at));
+    }
+
+    /**
+     * Tests bitLength for 2^64 (challenging).
+     */
+    @Test
+    public void testBitLengthfor2to64() {
+        final int bitsExpected = 65;
+        NaturalNumber n = new NaturalNumber2("18446744073709551616");
+        UniformSampler sampler = new UniformSampler(n);
+        assertEquals(bitsExpected, sampler.bitLength());
+    }
+
+    /*
+     * Tests of next
+     */
+
+    /**
+     * Tests next for 9 draws every value in [0, 9] about equally often
+     * (routine).
+     */
+    @Test
+    public void testNextfor9() {
+        final int top = 9;
+        final int draws = 10000;
+        final int least = 800;
+        final int most = 1200;
+        UniformSampler sampler = new UniformSampler(new NaturalNumber2(top));
+        RandomSource source = RandomSources.seeded(1);
+        int[] counts = new int[top + 1];
+        for (int i = 0; i < draws; i++) {
+            counts[sampler.next(source).toInt()]++;
+        }
+        for (int count : counts) {
+            assertEquals(true, least <= count && count <= most);
+        }
+    }
+
+    /**
+     * Tests next for 10^40 stays in range and is reproducible with a seeded
+     * source (challenging).
+     */
+    @Test
+    public void testNextfor10to40() {
+        final int draws = 100;
+        final long seed = 7;
+        NaturalNumber n = new NaturalNumber2(
+                "10000000000000000000000000000000000000000");
+        UniformSampler sampler = new UniformSampler(n);
+        RandomSource a = RandomSources.seeded(seed);
+        RandomSource b = RandomSources.seeded(seed);
+        NaturalNumber x = new NaturalNumber2();
+        for (int i = 0; i < draws; i++) {
+            sampler.next(x, a);
+            assertEquals(true, x.compareTo(n) <= 0);
+            assertEquals(sampler.next(b), x);
+        }
+    }
+
+}